@@ -0,0 +1,526 @@
+package com.activeandroid.processor;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.Table;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@link com.activeandroid.ModelBinder} for every {@link Table} model.
+ * <p>
+ * The processor is built as its own artifact, registered as a service, so that it runs when the
+ * artifact is on the {@code annotationProcessor} path and is never packaged in an application.
+ * <p>
+ * Models whose columns can't be reached from generated code in the same package (private or
+ * final fields, private classes, no accessible default constructor) are skipped and keep
+ * using reflection. Columns of a built-in type are bound directly and don't consult
+ * registered type serializers.
+ */
+@SupportedAnnotationTypes("com.activeandroid.annotation.Table")
+public final class ModelBinderProcessor extends AbstractProcessor {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/** Same as {@link com.activeandroid.ModelBinder#BINDER_SUFFIX}. */
+	private static final String BINDER_SUFFIX = "_ModelBinder";
+
+	private static final String MODEL = "com.activeandroid.Model";
+	private static final String LAZY = "com.activeandroid.Lazy";
+
+	private enum Kind {
+		BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, BOOLEAN, CHAR, STRING, BYTES, ENUM, MODEL, LAZY, SERIALIZED
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// OVERRIDEN METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(Table.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				continue;
+			}
+
+			final TypeElement type = (TypeElement) element;
+			try {
+				final List<VariableElement> fields = getBindableFields(type);
+				if (fields != null) {
+					writeBinder(type, fields);
+				}
+			}
+			catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"Couldn't write model binder: " + e.getMessage(), type);
+			}
+		}
+
+		return false;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	// Returns null when the model can't be bound from generated code.
+	private List<VariableElement> getBindableFields(TypeElement type) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT) || !isAccessible(type)
+				|| !hasDefaultConstructor(type)) {
+			return skip(type, "class or default constructor is not accessible");
+		}
+
+		final String packageName = getPackageName(type);
+		final List<VariableElement> fields = new ArrayList<VariableElement>();
+		final Set<String> names = new HashSet<String>();
+
+		TypeElement current = type;
+		while (current != null && !current.getQualifiedName().contentEquals(MODEL)) {
+			for (Element member : current.getEnclosedElements()) {
+				if (member.getKind() != ElementKind.FIELD || member.getAnnotation(Column.class) == null) {
+					continue;
+				}
+
+				final Set<Modifier> modifiers = member.getModifiers();
+				if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)
+						|| modifiers.contains(Modifier.STATIC)) {
+					return skip(type, "column " + member.getSimpleName() + " is private, final or static");
+				}
+				if (!modifiers.contains(Modifier.PUBLIC) && !packageName.equals(getPackageName(current))) {
+					return skip(type, "column " + member.getSimpleName() + " is not visible");
+				}
+				if (getKind(member.asType()) == Kind.LAZY
+						&& ((DeclaredType) member.asType()).getTypeArguments().isEmpty()) {
+					return skip(type, "column " + member.getSimpleName() + " doesn't declare the type of its Lazy");
+				}
+				if (!names.add(member.getSimpleName().toString())) {
+					return skip(type, "column " + member.getSimpleName() + " hides another column");
+				}
+
+				fields.add((VariableElement) member);
+			}
+
+			final TypeMirror superclass = current.getSuperclass();
+			current = superclass.getKind() == TypeKind.DECLARED
+					? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+
+		return fields;
+	}
+
+	private List<VariableElement> skip(TypeElement type, String reason) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+				"No model binder for " + type.getQualifiedName() + ": " + reason + ".", type);
+		return null;
+	}
+
+	private boolean isAccessible(TypeElement type) {
+		Element element = type;
+		while (element.getKind().isClass() || element.getKind().isInterface()) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			final Element enclosing = element.getEnclosingElement();
+			if (enclosing.getKind() != ElementKind.PACKAGE && !element.getModifiers().contains(Modifier.STATIC)) {
+				return false;
+			}
+			element = enclosing;
+		}
+		return true;
+	}
+
+	private boolean hasDefaultConstructor(TypeElement type) {
+		for (Element member : type.getEnclosedElements()) {
+			if (member.getKind() == ElementKind.CONSTRUCTOR
+					&& ((ExecutableElement) member).getParameters().isEmpty()
+					&& !member.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String getPackageName(TypeElement type) {
+		final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+		return packageElement.getQualifiedName().toString();
+	}
+
+	private Kind getKind(TypeMirror type) {
+		switch (type.getKind()) {
+			case BYTE:
+				return Kind.BYTE;
+			case SHORT:
+				return Kind.SHORT;
+			case INT:
+				return Kind.INT;
+			case LONG:
+				return Kind.LONG;
+			case FLOAT:
+				return Kind.FLOAT;
+			case DOUBLE:
+				return Kind.DOUBLE;
+			case BOOLEAN:
+				return Kind.BOOLEAN;
+			case CHAR:
+				return Kind.CHAR;
+			case ARRAY:
+				return "byte[]".equals(type.toString()) ? Kind.BYTES : Kind.SERIALIZED;
+			case DECLARED:
+				break;
+			default:
+				return Kind.SERIALIZED;
+		}
+
+		final String name = processingEnv.getTypeUtils().erasure(type).toString();
+		if ("java.lang.Byte".equals(name)) {
+			return Kind.BYTE;
+		}
+		else if ("java.lang.Short".equals(name)) {
+			return Kind.SHORT;
+		}
+		else if ("java.lang.Integer".equals(name)) {
+			return Kind.INT;
+		}
+		else if ("java.lang.Long".equals(name)) {
+			return Kind.LONG;
+		}
+		else if ("java.lang.Float".equals(name)) {
+			return Kind.FLOAT;
+		}
+		else if ("java.lang.Double".equals(name)) {
+			return Kind.DOUBLE;
+		}
+		else if ("java.lang.Boolean".equals(name)) {
+			return Kind.BOOLEAN;
+		}
+		else if ("java.lang.Character".equals(name)) {
+			return Kind.CHAR;
+		}
+		else if ("java.lang.String".equals(name)) {
+			return Kind.STRING;
+		}
+		else if (LAZY.equals(name)) {
+			return Kind.LAZY;
+		}
+		else if (((DeclaredType) type).asElement().getKind() == ElementKind.ENUM) {
+			return Kind.ENUM;
+		}
+
+		final TypeElement model = processingEnv.getElementUtils().getTypeElement(MODEL);
+		if (model != null && processingEnv.getTypeUtils().isSubtype(type, model.asType())) {
+			return Kind.MODEL;
+		}
+
+		return Kind.SERIALIZED;
+	}
+
+	/**
+	 * Model type argument of a {@code Lazy} field.
+	 */
+	private String getLazyType(TypeMirror type) {
+		final List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+		return processingEnv.getTypeUtils().erasure(arguments.get(0)).toString();
+	}
+
+	/**
+	 * Value of a primitive field of {@code kind} for a NULL column.
+	 */
+	private static String getDefaultValue(Kind kind) {
+		switch (kind) {
+			case BOOLEAN:
+				return "false";
+			case CHAR:
+				return "'\\0'";
+			case BYTE:
+				return "(byte) 0";
+			case SHORT:
+				return "(short) 0";
+			default:
+				return "0";
+		}
+	}
+
+	private void writeBinder(TypeElement type, List<VariableElement> fields) throws IOException {
+		final String packageName = getPackageName(type);
+		final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		final String binderName = (packageName.isEmpty() ? binaryName
+				: binaryName.substring(packageName.length() + 1)) + BINDER_SUFFIX;
+		final String modelName = type.getQualifiedName().toString();
+		final String idName = type.getAnnotation(Table.class).id();
+
+		final StringBuilder columns = new StringBuilder();
+		final StringBuilder write = new StringBuilder();
+		final StringBuilder bind = new StringBuilder();
+		final StringBuilder read = new StringBuilder();
+
+		columns.append(quote(idName));
+		write.append("\t\tvalues.put(").append(quote(idName)).append(", model.getId());\n");
+		bind.append("\t\tBinderUtils.bindValue(statement, 1, model.getId());\n");
+		// A model loaded again, from the entity cache or as a flyweight, has its NULL columns reset
+		read.append("\t\tfinal boolean reused = model.getId() != null;\n");
+		read.append("\t\tint index = columnIndexes[0];\n");
+		read.append("\t\tif (index >= 0 && !cursor.isNull(index)) {\n");
+		read.append("\t\t\tmodel.setId(cursor.getLong(index));\n");
+		read.append("\t\t}\n");
+
+		for (int i = 0; i < fields.size(); i++) {
+			final VariableElement field = fields.get(i);
+			final Column column = field.getAnnotation(Column.class);
+			final String columnName = quote(column.name().isEmpty()
+					? field.getSimpleName().toString() : column.name());
+			final String fieldName = "model." + field.getSimpleName();
+			final TypeMirror fieldType = field.asType();
+			final String typeName = processingEnv.getTypeUtils().erasure(fieldType).toString();
+			final boolean primitive = fieldType.getKind().isPrimitive();
+			final Kind kind = getKind(fieldType);
+
+			columns.append(", ").append(columnName);
+
+			// Write
+
+			switch (kind) {
+				case CHAR:
+					if (primitive) {
+						write.append("\t\tvalues.put(").append(columnName).append(", String.valueOf(")
+								.append(fieldName).append("));\n");
+					}
+					else {
+						write.append("\t\tvalues.put(").append(columnName).append(", ").append(fieldName)
+								.append(" != null ? ").append(fieldName).append(".toString() : null);\n");
+					}
+					break;
+				case ENUM:
+					write.append("\t\tvalues.put(").append(columnName).append(", ").append(fieldName)
+							.append(" != null ? ").append(fieldName).append(".name() : null);\n");
+					break;
+				case MODEL:
+				case LAZY:
+					write.append("\t\tvalues.put(").append(columnName).append(", ").append(fieldName)
+							.append(" != null ? ").append(fieldName).append(".getId() : null);\n");
+					break;
+				case SERIALIZED:
+					write.append("\t\tBinderUtils.serialize(values, ").append(columnName).append(", ")
+							.append(typeName).append(".class, ").append(fieldName).append(");\n");
+					break;
+				default:
+					write.append("\t\tvalues.put(").append(columnName).append(", ").append(fieldName)
+							.append(");\n");
+					break;
+			}
+
+			// Bind
+
+			final int parameter = i + 2;
+			String bindMethod = null;
+			String bindValue = fieldName;
+			switch (kind) {
+				case BYTE:
+				case SHORT:
+				case INT:
+				case LONG:
+					bindMethod = "bindLong";
+					break;
+				case FLOAT:
+				case DOUBLE:
+					bindMethod = "bindDouble";
+					break;
+				case BOOLEAN:
+					bindMethod = "bindLong";
+					bindValue = fieldName + " ? 1 : 0";
+					break;
+				case CHAR:
+					bindMethod = "bindString";
+					bindValue = primitive ? "String.valueOf(" + fieldName + ")" : fieldName + ".toString()";
+					break;
+				case STRING:
+					bindMethod = "bindString";
+					break;
+				case BYTES:
+					bindMethod = "bindBlob";
+					break;
+				case ENUM:
+					bindMethod = "bindString";
+					bindValue = fieldName + ".name()";
+					break;
+				case MODEL:
+				case LAZY:
+					bind.append("\t\tBinderUtils.bindValue(statement, ").append(parameter).append(", ")
+							.append(fieldName).append(" != null ? ").append(fieldName).append(".getId() : null);\n");
+					break;
+				case SERIALIZED:
+					bind.append("\t\tBinderUtils.bindSerialized(statement, ").append(parameter).append(", ")
+							.append(typeName).append(".class, ").append(fieldName).append(");\n");
+					break;
+			}
+			if (bindMethod != null) {
+				if (primitive) {
+					bind.append("\t\tstatement.").append(bindMethod).append("(").append(parameter).append(", ")
+							.append(bindValue).append(");\n");
+				}
+				else {
+					bind.append("\t\tif (").append(fieldName).append(" == null) {\n");
+					bind.append("\t\t\tstatement.bindNull(").append(parameter).append(");\n");
+					bind.append("\t\t}\n");
+					bind.append("\t\telse {\n");
+					bind.append("\t\t\tstatement.").append(bindMethod).append("(").append(parameter).append(", ")
+							.append(bindValue).append(");\n");
+					bind.append("\t\t}\n");
+				}
+			}
+
+			// Read
+
+			read.append("\t\tindex = columnIndexes[").append(i + 1).append("];\n");
+			read.append("\t\tif (index >= 0 && !cursor.isNull(index)) {\n");
+			switch (kind) {
+				case BYTE:
+					read.append("\t\t\t").append(fieldName).append(" = (byte) cursor.getInt(index);\n");
+					break;
+				case SHORT:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getShort(index);\n");
+					break;
+				case INT:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getInt(index);\n");
+					break;
+				case LONG:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getLong(index);\n");
+					break;
+				case FLOAT:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getFloat(index);\n");
+					break;
+				case DOUBLE:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getDouble(index);\n");
+					break;
+				case BOOLEAN:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getInt(index) != 0;\n");
+					break;
+				case CHAR:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getString(index).charAt(0);\n");
+					break;
+				case STRING:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getString(index);\n");
+					break;
+				case BYTES:
+					read.append("\t\t\t").append(fieldName).append(" = cursor.getBlob(index);\n");
+					break;
+				case ENUM:
+					read.append("\t\t\t").append(fieldName).append(" = ").append(typeName)
+							.append(".valueOf(cursor.getString(index));\n");
+					break;
+				case MODEL:
+					read.append("\t\t\tfinal ").append(typeName).append(" entity = BinderUtils.loadReference(")
+							.append(typeName).append(".class, cursor.getLong(index));\n");
+					read.append("\t\t\tif (entity != null) {\n");
+					read.append("\t\t\t\t").append(fieldName).append(" = entity;\n");
+					read.append("\t\t\t}\n");
+					break;
+				case LAZY:
+					final String lazyType = getLazyType(fieldType);
+					read.append("\t\t\t").append(fieldName).append(" = new com.activeandroid.Lazy<")
+							.append(lazyType).append(">(").append(lazyType).append(".class, cursor.getLong(index));\n");
+					break;
+				case SERIALIZED:
+					read.append("\t\t\tfinal Object value = BinderUtils.deserialize(").append(typeName)
+							.append(".class, cursor, index);\n");
+					read.append("\t\t\tif (value != null) {\n");
+					read.append("\t\t\t\t").append(fieldName).append(" = (").append(typeName).append(") value;\n");
+					read.append("\t\t\t}\n");
+					break;
+			}
+			read.append("\t\t}\n");
+			read.append("\t\telse if (index >= 0 && reused) {\n");
+			read.append("\t\t\t").append(fieldName).append(" = ").append(primitive ? getDefaultValue(kind) : "null")
+					.append(";\n");
+			read.append("\t\t}\n");
+		}
+
+		final Writer writer = processingEnv.getFiler()
+				.createSourceFile(packageName.isEmpty() ? binderName : packageName + "." + binderName, type)
+				.openWriter();
+		try {
+			writer.write("// Generated code from ActiveAndroid. Do not modify!\n");
+			if (!packageName.isEmpty()) {
+				writer.write("package " + packageName + ";\n");
+			}
+			writer.write("\n");
+			writer.write("import android.content.ContentValues;\n");
+			writer.write("import android.database.Cursor;\n");
+			writer.write("import android.database.sqlite.SQLiteStatement;\n\n");
+			writer.write("import com.activeandroid.ModelBinder;\n");
+			writer.write("import com.activeandroid.util.BinderUtils;\n\n");
+			writer.write("@SuppressWarnings(\"unchecked\")\n");
+			writer.write("public final class " + binderName + " implements ModelBinder<" + modelName + "> {\n");
+			writer.write("\tprivate static final String[] COLUMNS = { " + columns + " };\n\n");
+			writer.write("\t@Override\n");
+			writer.write("\tpublic String[] getColumnNames() {\n");
+			writer.write("\t\treturn COLUMNS;\n");
+			writer.write("\t}\n\n");
+			writer.write("\t@Override\n");
+			writer.write("\tpublic " + modelName + " newInstance() {\n");
+			writer.write("\t\treturn new " + modelName + "();\n");
+			writer.write("\t}\n\n");
+			writer.write("\t@Override\n");
+			writer.write("\tpublic void toContentValues(" + modelName + " model, ContentValues values) {\n");
+			writer.write(write.toString());
+			writer.write("\t}\n\n");
+			writer.write("\t@Override\n");
+			writer.write("\tpublic void bindStatement(" + modelName + " model, SQLiteStatement statement) {\n");
+			writer.write(bind.toString());
+			writer.write("\t}\n\n");
+			writer.write("\t@Override\n");
+			writer.write("\tpublic void loadFromCursor(" + modelName + " model, Cursor cursor, int[] columnIndexes) {\n");
+			writer.write(read.toString());
+			writer.write("\t}\n");
+			writer.write("}\n");
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
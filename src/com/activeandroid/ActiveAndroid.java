@@ -25,6 +25,7 @@ import com.activeandroid.sqlbrite.SqlBrite;
 import com.activeandroid.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import rx.Observable;
@@ -61,6 +62,13 @@ public final class ActiveAndroid {
         Cache.clear();
     }
 
+    /**
+     * Wait until the models queued by {@link Model#saveLater()} before the call are saved.
+     */
+    public static void flush() {
+        Cache.flush();
+    }
+
     public static void dispose() {
         Cache.dispose();
     }
@@ -73,6 +81,13 @@ public final class ActiveAndroid {
         return Cache.openDatabase();
     }
 
+    /**
+     * Writer running the write units of all threads in shared transactions.
+     */
+    public static GroupCommitWriter getGroupCommitWriter() {
+        return Cache.getGroupCommitWriter();
+    }
+
     public static BriteDatabase.Transaction beginTransaction() {
         sLastTransaction = Cache.openDatabase().newTransaction();
         return sLastTransaction;
@@ -123,6 +138,11 @@ public final class ActiveAndroid {
     }
 
 
+    /** Save all models in one transaction, see {@link Model#saveAll(Collection)} */
+    public static void saveAll(Collection<? extends Model> models) {
+        Model.saveAll(models);
+    }
+
     public static void execSQL(String sql) {
         Cache.openDatabase().execute(sql);
     }
@@ -162,9 +182,10 @@ public final class ActiveAndroid {
                             Cursor cursor = query.run();
                             List<Model> data = new ArrayList<Model>();
                             if (cursor != null && cursor.getCount() > 0) {
+                                CursorProjection projection = new CursorProjection(Cache.getTableInfo(clase), cursor);
                                 while (cursor.moveToNext()) {
                                     Model model = clase.newInstance();
-                                    model.loadFromCursor(cursor);
+                                    model.loadFromCursor(cursor, projection);
                                     data.add(model);
                                 }
                             }
@@ -17,14 +17,22 @@ package com.activeandroid;
  */
 
 import android.content.Context;
-import android.support.v4.util.LruCache;
 
+import com.activeandroid.annotation.Cacheable;
 import com.activeandroid.serializer.TypeSerializer;
 import com.activeandroid.sqlbrite.BriteDatabase;
 import com.activeandroid.sqlbrite.SqlBrite;
 import com.activeandroid.util.Log;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public final class Cache {
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -37,18 +45,36 @@ public final class Cache {
 	// PRIVATE MEMBERS
 	//////////////////////////////////////////////////////////////////////////////////////
 
-	private static Context sContext;
+	// Written under the class lock by initialize() and dispose(), read without locking: the
+	// metadata doesn't change once loaded, so lookups by models and queries don't contend.
+	private static volatile Context sContext;
 
-	private static ModelInfo sModelInfo;
-	private static DatabaseHelper sDatabaseHelper;
+	private static volatile ModelInfo sModelInfo;
+	/** By lower case table name. */
+	private static volatile Map<String, TableInfo> sTableInfosByName;
+	private static volatile DatabaseHelper sDatabaseHelper;
 
-	private static LruCache<String, Model> sEntities;
+	/** Shared segment, then the segments of the {@link Cacheable} policies. */
+	private static volatile StripedEntityCache[] sEntityCaches;
+
+	/** Null when disabled. */
+	private static volatile QueryCache sQueryCache;
+
+	private static volatile WriteBehindQueue sWriteBehindQueue;
+	private static volatile GroupCommitWriter sGroupCommitWriter;
 
 	private static SqlBrite sSqlBrite;
 
-	private static BriteDatabase sDatabase;
+	private static final BriteDatabase.WriteListener WRITE_LISTENER = new BriteDatabase.WriteListener() {
+		@Override
+		public void onTablesWritten(Set<String> tables) {
+			Cache.onTablesWritten(tables);
+		}
+	};
+
+	private static volatile BriteDatabase sDatabase;
 
-	private static boolean sIsInitialized = false;
+	private static volatile boolean sIsInitialized = false;
 
 	//////////////////////////////////////////////////////////////////////////////////////
 	// CONSTRUCTORS
@@ -68,17 +94,20 @@ public final class Cache {
 		}
 
 		sContext = configuration.getContext();
-		sModelInfo = new ModelInfo(configuration);
+		final ModelInfo modelInfo = new ModelInfo(configuration);
+		sEntityCaches = createEntityCaches(configuration, modelInfo.getTableInfos());
+		sTableInfosByName = mapTableInfosByName(modelInfo.getTableInfos());
+		sModelInfo = modelInfo;
 		sDatabaseHelper = new DatabaseHelper(configuration);
 		sSqlBrite = SqlBrite.create();
 		sDatabase = sSqlBrite.wrapDatabaseHelper(sDatabaseHelper);
-
-
-		// TODO: It would be nice to override sizeOf here and calculate the memory
-		// actually used, however at this point it seems like the reflection
-		// required would be too costly to be of any benefit. We'll just set a max
-		// object size instead.
-		sEntities = new LruCache<String, Model>(configuration.getCacheSize());
+		if (configuration.getQueryCacheSize() > 0) {
+			sQueryCache = new QueryCache(configuration.getQueryCacheSize(), modelInfo.getTableInfos());
+		}
+		sDatabase.setWriteListener(WRITE_LISTENER);
+		sWriteBehindQueue = new WriteBehindQueue(configuration.getWriteBehindBatchSize(),
+				configuration.getWriteBehindWindowMillis());
+		sGroupCommitWriter = new GroupCommitWriter();
 
 		openDatabase();
 
@@ -87,16 +116,32 @@ public final class Cache {
 		Log.v("ActiveAndroid initialized successfully.");
 	}
 
-	public static synchronized void clear() {
-		sEntities.evictAll();
+	public static void clear() {
+		for (StripedEntityCache entityCache : sEntityCaches) {
+			entityCache.clear();
+		}
+		final QueryCache queryCache = sQueryCache;
+		if (queryCache != null) {
+			queryCache.clear();
+		}
 		Log.v("Cache cleared.");
 	}
 
 	public static synchronized void dispose() {
+		if (sWriteBehindQueue != null) {
+			sWriteBehindQueue.shutdown();
+			sWriteBehindQueue = null;
+		}
+		if (sGroupCommitWriter != null) {
+			sGroupCommitWriter.shutdown();
+			sGroupCommitWriter = null;
+		}
 		closeDatabase();
 
-		sEntities = null;
+		sEntityCaches = null;
+		sQueryCache = null;
 		sModelInfo = null;
+		sTableInfosByName = null;
 		sDatabaseHelper = null;
 
 		sIsInitialized = false;
@@ -110,12 +155,18 @@ public final class Cache {
 		return sIsInitialized;
 	}
 
-	public static synchronized BriteDatabase openDatabase() {
+	public static BriteDatabase openDatabase() {
 		return sDatabase;
 	}
 
 	public static synchronized void closeDatabase() {
-		sDatabaseHelper.close();
+		// Through the BriteDatabase so that its cached databases and statements are released too
+		try {
+			sDatabase.close();
+		}
+		catch (IOException e) {
+			Log.e("Failed to close the database", e);
+		}
 	}
 
 	// Context access
@@ -134,33 +185,98 @@ public final class Cache {
 		return getIdentifier(entity.getClass(), entity.getId());
 	}
 
-	public static synchronized void addEntity(Model entity) {
-		sEntities.put(getIdentifier(entity), entity);
+	public static void addEntity(Model entity) {
+		final Long id = entity.getId();
+		final TableInfo tableInfo = getTableInfo(entity.getClass());
+		if (id != null && tableInfo.getEntityCache() != null) {
+			tableInfo.getEntityCache().put(tableInfo, id, entity);
+			tableInfo.count(TableInfo.CACHE_PUTS, 1);
+		}
+	}
+
+	public static Model getEntity(Class<? extends Model> type, long id) {
+		final TableInfo tableInfo = getTableInfo(type);
+		if (tableInfo.getEntityCache() == null) {
+			return null;
+		}
+
+		final Model entity = tableInfo.getEntityCache().get(tableInfo, id);
+		tableInfo.count(entity != null ? TableInfo.CACHE_HITS : TableInfo.CACHE_MISSES, 1);
+		return entity;
+	}
+
+	public static void removeEntity(Model entity) {
+		final Long id = entity.getId();
+		final TableInfo tableInfo = getTableInfo(entity.getClass());
+		if (id != null && tableInfo.getEntityCache() != null) {
+			tableInfo.getEntityCache().remove(tableInfo, id);
+		}
+	}
+
+	/**
+	 * Snapshots of the cache counters of all tables.
+	 *
+	 * @see TableInfo#getCacheMetrics()
+	 */
+	public static List<CacheMetrics> getCacheMetrics() {
+		final List<CacheMetrics> metrics = new ArrayList<CacheMetrics>();
+		for (TableInfo tableInfo : getTableInfos()) {
+			metrics.add(tableInfo.getCacheMetrics());
+		}
+		return metrics;
+	}
+
+	public static void resetCacheMetrics() {
+		for (TableInfo tableInfo : getTableInfos()) {
+			tableInfo.resetCacheMetrics();
+		}
 	}
 
-	public static synchronized Model getEntity(Class<? extends Model> type, long id) {
-		return sEntities.get(getIdentifier(type, id));
+	// Query cache
+
+	/**
+	 * The cache of query results, null unless enabled with
+	 * {@link Configuration.Builder#setQueryCacheSize(int)}.
+	 */
+	public static QueryCache getQueryCache() {
+		return sQueryCache;
+	}
+
+	// Write-behind queue
+
+	/**
+	 * Wait until the models queued by {@link Model#saveLater()} before the call are saved.
+	 */
+	public static void flush() {
+		final WriteBehindQueue writeBehindQueue = sWriteBehindQueue;
+		if (writeBehindQueue != null) {
+			writeBehindQueue.flush();
+		}
 	}
 
-	public static synchronized void removeEntity(Model entity) {
-		sEntities.remove(getIdentifier(entity));
+	static WriteBehindQueue getWriteBehindQueue() {
+		return sWriteBehindQueue;
+	}
+
+	public static GroupCommitWriter getGroupCommitWriter() {
+		return sGroupCommitWriter;
 	}
 
 	// Model cache
 
-	public static synchronized Collection<TableInfo> getTableInfos() {
+	public static Collection<TableInfo> getTableInfos() {
 		return sModelInfo.getTableInfos();
 	}
 
-	public static synchronized TableInfo getTableInfo(Class<? extends Model> type) {
+	public static TableInfo getTableInfo(Class<? extends Model> type) {
 		return sModelInfo.getTableInfo(type);
 	}
 
-	public static synchronized TypeSerializer getParserForType(Class<?> type) {
+	public static TypeSerializer getParserForType(Class<?> type) {
 		return sModelInfo.getTypeSerializer(type);
 	}
 
-	public static synchronized String getTableName(Class<? extends Model> type) {
+	public static String getTableName(Class<? extends Model> type) {
 		return sModelInfo.getTableInfo(type).getTableName();
 	}
 
@@ -168,4 +284,77 @@ public final class Cache {
 		return sDatabaseHelper;
 	}
 
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Tell the tables, whose included children become stale, and the query cache that
+	 * {@code tables} were written.
+	 */
+	private static void onTablesWritten(Set<String> tables) {
+		final Map<String, TableInfo> tableInfos = sTableInfosByName;
+		if (tableInfos != null) {
+			for (String table : tables) {
+				final TableInfo tableInfo = tableInfos.get(table.toLowerCase(Locale.US));
+				if (tableInfo != null) {
+					tableInfo.onWritten();
+				}
+			}
+		}
+
+		final QueryCache queryCache = sQueryCache;
+		if (queryCache != null) {
+			queryCache.onTablesWritten(tables);
+		}
+	}
+
+	private static Map<String, TableInfo> mapTableInfosByName(Collection<TableInfo> tableInfos) {
+		final Map<String, TableInfo> byName = new HashMap<String, TableInfo>();
+		for (TableInfo tableInfo : tableInfos) {
+			byName.put(tableInfo.getTableName().toLowerCase(Locale.US), tableInfo);
+		}
+		return byName;
+	}
+
+	/**
+	 * Attach each table to the segment of its {@link Cacheable} policy, or to the shared segment,
+	 * which is bounded by the cache size and budget of the configuration.
+	 */
+	private static StripedEntityCache[] createEntityCaches(Configuration configuration,
+			Collection<TableInfo> tableInfos) {
+		final int concurrencyLevel = configuration.getCacheConcurrencyLevel();
+		final StripedEntityCache shared = new StripedEntityCache(configuration.getCacheSize(),
+				configuration.getCacheSizeBytes(), 0, concurrencyLevel);
+
+		final Map<String, StripedEntityCache> segments = new LinkedHashMap<String, StripedEntityCache>();
+		for (TableInfo tableInfo : tableInfos) {
+			final Cacheable cacheable = tableInfo.getCacheable();
+			if (cacheable == null) {
+				tableInfo.setEntityCache(shared);
+			}
+			else if (!cacheable.value()) {
+				tableInfo.setEntityCache(null);
+			}
+			else {
+				final int size = cacheable.size() > 0 ? cacheable.size() : configuration.getCacheSize();
+				final String policy = size + "/" + cacheable.expireAfterMillis();
+				StripedEntityCache segment = segments.get(policy);
+				if (segment == null) {
+					segment = new StripedEntityCache(size, 0, cacheable.expireAfterMillis(), concurrencyLevel);
+					segments.put(policy, segment);
+				}
+				tableInfo.setEntityCache(segment);
+			}
+		}
+
+		final StripedEntityCache[] entityCaches = new StripedEntityCache[segments.size() + 1];
+		entityCaches[0] = shared;
+		int i = 1;
+		for (StripedEntityCache segment : segments.values()) {
+			entityCaches[i++] = segment;
+		}
+		return entityCaches;
+	}
+
 }
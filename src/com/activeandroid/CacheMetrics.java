@@ -0,0 +1,123 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Snapshot of the entity cache counters of a table, see {@link TableInfo#getCacheMetrics()}.
+ * Counters are totals since the table was registered or since the last
+ * {@link TableInfo#resetCacheMetrics()}; the size is the current one.
+ */
+public final class CacheMetrics {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final String mTableName;
+	private final long mHitCount;
+	private final long mMissCount;
+	private final long mPutCount;
+	private final long mEvictionCount;
+	private final long mSize;
+	private final long mLoadCount;
+	private final long mLoadTimeNanos;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	CacheMetrics(String tableName, long hitCount, long missCount, long putCount, long evictionCount,
+			long size, long loadCount, long loadTimeNanos) {
+		mTableName = tableName;
+		mHitCount = hitCount;
+		mMissCount = missCount;
+		mPutCount = putCount;
+		mEvictionCount = evictionCount;
+		mSize = size;
+		mLoadCount = loadCount;
+		mLoadTimeNanos = loadTimeNanos;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public String getTableName() {
+		return mTableName;
+	}
+
+	/**
+	 * Lookups of a model by id which found it in the cache.
+	 */
+	public long getHitCount() {
+		return mHitCount;
+	}
+
+	public long getMissCount() {
+		return mMissCount;
+	}
+
+	/**
+	 * Hits divided by lookups, 0 without lookups.
+	 */
+	public double getHitRate() {
+		final long lookups = mHitCount + mMissCount;
+		return lookups > 0 ? (double) mHitCount / lookups : 0;
+	}
+
+	public long getPutCount() {
+		return mPutCount;
+	}
+
+	/**
+	 * Models removed from the cache to make room for others, or because they expired.
+	 */
+	public long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	/**
+	 * Models of the table in the cache.
+	 */
+	public long getSize() {
+		return mSize;
+	}
+
+	/**
+	 * Rows loaded into models by {@link Model#loadFromCursor}.
+	 */
+	public long getLoadCount() {
+		return mLoadCount;
+	}
+
+	/**
+	 * Time spent loading rows into models.
+	 */
+	public long getLoadTimeNanos() {
+		return mLoadTimeNanos;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// OVERRIDEN METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public String toString() {
+		return mTableName + " [hits=" + mHitCount + ", misses=" + mMissCount + ", puts=" + mPutCount
+				+ ", evictions=" + mEvictionCount + ", size=" + mSize + ", loads=" + mLoadCount
+				+ ", loadTime=" + (mLoadTimeNanos / 1000) + "us]";
+	}
+}
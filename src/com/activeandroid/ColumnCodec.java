@@ -0,0 +1,824 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import com.activeandroid.serializer.TypeSerializer;
+import com.activeandroid.util.BinderUtils;
+import com.activeandroid.util.Log;
+import com.activeandroid.util.ReflectionUtils;
+import com.activeandroid.util.SQLiteUtils.SQLiteType;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes one column of a model with reflection.
+ * <p>
+ * Codecs are resolved once per table by {@link TableInfo#getCodecs()}: the type dispatch, the
+ * serializer lookup and {@link Field#setAccessible(boolean)} don't happen again for each row.
+ * Primitive columns use the primitive accessors of {@link Field} and are never boxed.
+ */
+public abstract class ColumnCodec {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	protected final Field mField;
+	protected final String mColumnName;
+	private final SQLiteType mSQLiteType;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	ColumnCodec(Field field, String columnName, SQLiteType sqliteType) {
+		mField = field;
+		mColumnName = columnName;
+		mSQLiteType = sqliteType;
+
+		if (field != null) {
+			field.setAccessible(true);
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public Field getField() {
+		return mField;
+	}
+
+	public String getColumnName() {
+		return mColumnName;
+	}
+
+	public SQLiteType getSQLiteType() {
+		return mSQLiteType;
+	}
+
+	/**
+	 * Model referenced by the column when it is a foreign key, null otherwise.
+	 */
+	public Class<? extends Model> getReferencedType() {
+		return null;
+	}
+
+	/**
+	 * Put the value of the field in {@code values}.
+	 */
+	public abstract void write(Model model, ContentValues values) throws IllegalAccessException;
+
+	/**
+	 * Bind the value of the field to the parameter {@code index} of {@code statement}.
+	 */
+	public abstract void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException;
+
+	/**
+	 * Set the field from a column which is not null.
+	 */
+	public abstract void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException;
+
+	/**
+	 * Read a column which is not null as the boxed type of this codec.
+	 */
+	public abstract Object readValue(Cursor cursor, int columnIndex);
+
+	/**
+	 * Set the field from a NULL column: null, or 0 or false for a primitive field.
+	 */
+	public void readNull(Model model) throws IllegalAccessException {
+		final Class<?> type = mField.getType();
+		if (!type.isPrimitive()) {
+			mField.set(model, null);
+		}
+		else if (type == boolean.class) {
+			mField.setBoolean(model, false);
+		}
+		else if (type == char.class) {
+			mField.setChar(model, '\0');
+		}
+		else {
+			// Widened to the numeric type of the field
+			mField.setByte(model, (byte) 0);
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PACKAGE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns null when the type can't be stored.
+	 */
+	@SuppressWarnings("unchecked")
+	static ColumnCodec create(Field field, String columnName, Class<?> type, TypeSerializer typeSerializer) {
+		if (typeSerializer != null) {
+			final ColumnCodec serializedCodec = create(null, columnName, typeSerializer.getSerializedType(), null);
+			if (serializedCodec == null) {
+				Log.e("No type mapping for: " + typeSerializer.getSerializedType());
+				return null;
+			}
+			return new SerializedCodec(field, columnName, typeSerializer, serializedCodec);
+		}
+
+		if (type.equals(Byte.class) || type.equals(byte.class)) {
+			return new ByteCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(Short.class) || type.equals(short.class)) {
+			return new ShortCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(Integer.class) || type.equals(int.class)) {
+			return new IntCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(Long.class) || type.equals(long.class)) {
+			return new LongCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(Float.class) || type.equals(float.class)) {
+			return new FloatCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(Double.class) || type.equals(double.class)) {
+			return new DoubleCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
+			return new BooleanCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(Character.class) || type.equals(char.class)) {
+			return new CharCodec(field, columnName, type.isPrimitive());
+		}
+		else if (type.equals(String.class)) {
+			return new StringCodec(field, columnName);
+		}
+		else if (type.equals(byte[].class)) {
+			return new BlobCodec(field, columnName);
+		}
+		else if (type.equals(Lazy.class)) {
+			final Class<? extends Model> entityType = ReflectionUtils.getLazyType(field);
+			return entityType != null ? new LazyCodec(field, columnName, entityType) : null;
+		}
+		else if (ReflectionUtils.isModel(type)) {
+			return new ModelCodec(field, columnName, (Class<? extends Model>) type);
+		}
+		else if (ReflectionUtils.isSubclassOf(type, Enum.class)) {
+			return new EnumCodec(field, columnName, (Class<? extends Enum<?>>) type);
+		}
+
+		return null;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// INNER CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final class ByteCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		ByteCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.INTEGER);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, mField.getByte(model));
+			}
+			else {
+				values.put(mColumnName, (Byte) mField.get(model));
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindLong(index, mField.getByte(model));
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindLong(index, (Byte) value);
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setByte(model, (byte) cursor.getInt(columnIndex));
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return (byte) cursor.getInt(columnIndex);
+		}
+	}
+
+	private static final class ShortCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		ShortCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.INTEGER);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, mField.getShort(model));
+			}
+			else {
+				values.put(mColumnName, (Short) mField.get(model));
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindLong(index, mField.getShort(model));
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindLong(index, (Short) value);
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setShort(model, cursor.getShort(columnIndex));
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getShort(columnIndex);
+		}
+	}
+
+	private static final class IntCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		IntCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.INTEGER);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, mField.getInt(model));
+			}
+			else {
+				values.put(mColumnName, (Integer) mField.get(model));
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindLong(index, mField.getInt(model));
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindLong(index, (Integer) value);
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setInt(model, cursor.getInt(columnIndex));
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getInt(columnIndex);
+		}
+	}
+
+	private static final class LongCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		LongCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.INTEGER);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, mField.getLong(model));
+			}
+			else {
+				values.put(mColumnName, (Long) mField.get(model));
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindLong(index, mField.getLong(model));
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindLong(index, (Long) value);
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setLong(model, cursor.getLong(columnIndex));
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getLong(columnIndex);
+		}
+	}
+
+	private static final class FloatCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		FloatCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.REAL);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, mField.getFloat(model));
+			}
+			else {
+				values.put(mColumnName, (Float) mField.get(model));
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindDouble(index, mField.getFloat(model));
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindDouble(index, (Float) value);
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setFloat(model, cursor.getFloat(columnIndex));
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getFloat(columnIndex);
+		}
+	}
+
+	private static final class DoubleCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		DoubleCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.REAL);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, mField.getDouble(model));
+			}
+			else {
+				values.put(mColumnName, (Double) mField.get(model));
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindDouble(index, mField.getDouble(model));
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindDouble(index, (Double) value);
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setDouble(model, cursor.getDouble(columnIndex));
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getDouble(columnIndex);
+		}
+	}
+
+	private static final class BooleanCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		BooleanCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.INTEGER);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, mField.getBoolean(model));
+			}
+			else {
+				values.put(mColumnName, (Boolean) mField.get(model));
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindLong(index, mField.getBoolean(model) ? 1 : 0);
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindLong(index, (Boolean) value ? 1 : 0);
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setBoolean(model, cursor.getInt(columnIndex) != 0);
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getInt(columnIndex) != 0;
+		}
+	}
+
+	private static final class CharCodec extends ColumnCodec {
+		private final boolean mPrimitive;
+
+		CharCodec(Field field, String columnName, boolean primitive) {
+			super(field, columnName, SQLiteType.TEXT);
+			mPrimitive = primitive;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			if (mPrimitive) {
+				values.put(mColumnName, String.valueOf(mField.getChar(model)));
+			}
+			else {
+				final Object value = mField.get(model);
+				values.put(mColumnName, value != null ? value.toString() : null);
+			}
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			if (mPrimitive) {
+				statement.bindString(index, String.valueOf(mField.getChar(model)));
+			}
+			else {
+				final Object value = mField.get(model);
+				if (value == null) {
+					statement.bindNull(index);
+				}
+				else {
+					statement.bindString(index, value.toString());
+				}
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			if (mPrimitive) {
+				mField.setChar(model, cursor.getString(columnIndex).charAt(0));
+			}
+			else {
+				mField.set(model, readValue(cursor, columnIndex));
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getString(columnIndex).charAt(0);
+		}
+	}
+
+	private static final class StringCodec extends ColumnCodec {
+		StringCodec(Field field, String columnName) {
+			super(field, columnName, SQLiteType.TEXT);
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			values.put(mColumnName, (String) mField.get(model));
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			final String value = (String) mField.get(model);
+			if (value == null) {
+				statement.bindNull(index);
+			}
+			else {
+				statement.bindString(index, value);
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			mField.set(model, cursor.getString(columnIndex));
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getString(columnIndex);
+		}
+	}
+
+	private static final class BlobCodec extends ColumnCodec {
+		BlobCodec(Field field, String columnName) {
+			super(field, columnName, SQLiteType.BLOB);
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			values.put(mColumnName, (byte[]) mField.get(model));
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			final byte[] value = (byte[]) mField.get(model);
+			if (value == null) {
+				statement.bindNull(index);
+			}
+			else {
+				statement.bindBlob(index, value);
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			mField.set(model, cursor.getBlob(columnIndex));
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return cursor.getBlob(columnIndex);
+		}
+	}
+
+	private static final class EnumCodec extends ColumnCodec {
+		private final Class<? extends Enum<?>> mEnumType;
+		private final Map<String, Enum<?>> mConstants = new HashMap<String, Enum<?>>();
+
+		EnumCodec(Field field, String columnName, Class<? extends Enum<?>> enumType) {
+			super(field, columnName, SQLiteType.TEXT);
+			mEnumType = enumType;
+			for (Enum<?> constant : enumType.getEnumConstants()) {
+				mConstants.put(constant.name(), constant);
+			}
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			final Enum<?> value = (Enum<?>) mField.get(model);
+			values.put(mColumnName, value != null ? value.name() : null);
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			final Enum<?> value = (Enum<?>) mField.get(model);
+			if (value == null) {
+				statement.bindNull(index);
+			}
+			else {
+				statement.bindString(index, value.name());
+			}
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			mField.set(model, readValue(cursor, columnIndex));
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			final String name = cursor.getString(columnIndex);
+			final Enum<?> value = mConstants.get(name);
+			if (value == null) {
+				throw new IllegalArgumentException("No enum constant " + mEnumType.getName() + "." + name);
+			}
+			return value;
+		}
+	}
+
+	private static final class ModelCodec extends ColumnCodec {
+		private final Class<? extends Model> mEntityType;
+
+		ModelCodec(Field field, String columnName, Class<? extends Model> entityType) {
+			super(field, columnName, SQLiteType.INTEGER);
+			mEntityType = entityType;
+		}
+
+		@Override
+		public Class<? extends Model> getReferencedType() {
+			return mEntityType;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			final Model value = (Model) mField.get(model);
+			values.put(mColumnName, value != null ? value.getId() : null);
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			final Model value = (Model) mField.get(model);
+			BinderUtils.bindValue(statement, index, value != null ? value.getId() : null);
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			final Object entity = readValue(cursor, columnIndex);
+			if (entity != null) {
+				mField.set(model, entity);
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return BinderUtils.loadReference(mEntityType, cursor.getLong(columnIndex));
+		}
+	}
+
+	private static final class LazyCodec extends ColumnCodec {
+		private final Class<? extends Model> mEntityType;
+
+		LazyCodec(Field field, String columnName, Class<? extends Model> entityType) {
+			super(field, columnName, SQLiteType.INTEGER);
+			mEntityType = entityType;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			final Lazy<?> value = (Lazy<?>) mField.get(model);
+			values.put(mColumnName, value != null ? value.getId() : null);
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			final Lazy<?> value = (Lazy<?>) mField.get(model);
+			BinderUtils.bindValue(statement, index, value != null ? value.getId() : null);
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			mField.set(model, readValue(cursor, columnIndex));
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return newLazy(mEntityType, cursor.getLong(columnIndex));
+		}
+
+		private static <T extends Model> Lazy<T> newLazy(Class<T> type, long id) {
+			return new Lazy<T>(type, id);
+		}
+	}
+
+	private static final class SerializedCodec extends ColumnCodec {
+		private final TypeSerializer mTypeSerializer;
+		private final ColumnCodec mSerializedCodec;
+
+		SerializedCodec(Field field, String columnName, TypeSerializer typeSerializer, ColumnCodec serializedCodec) {
+			super(field, columnName, serializedCodec.getSQLiteType());
+			mTypeSerializer = typeSerializer;
+			mSerializedCodec = serializedCodec;
+		}
+
+		@Override
+		public void write(Model model, ContentValues values) throws IllegalAccessException {
+			Object value = mField.get(model);
+			if (value != null) {
+				value = mTypeSerializer.serialize(value);
+			}
+
+			// check that the serializer returned what it promised
+			if (value != null && !value.getClass().equals(mTypeSerializer.getSerializedType())) {
+				Log.w(String.format("TypeSerializer returned wrong type: expected a %s but got a %s",
+						mTypeSerializer.getSerializedType(), value.getClass()));
+			}
+
+			BinderUtils.putValue(values, mColumnName, value);
+		}
+
+		@Override
+		public void bind(Model model, SQLiteStatement statement, int index) throws IllegalAccessException {
+			Object value = mField.get(model);
+			if (value != null) {
+				value = mTypeSerializer.serialize(value);
+			}
+			BinderUtils.bindValue(statement, index, value);
+		}
+
+		@Override
+		public void read(Model model, Cursor cursor, int columnIndex) throws IllegalAccessException {
+			final Object value = readValue(cursor, columnIndex);
+			if (value != null) {
+				mField.set(model, value);
+			}
+		}
+
+		@Override
+		public Object readValue(Cursor cursor, int columnIndex) {
+			return mTypeSerializer.deserialize(mSerializedCodec.readValue(cursor, columnIndex));
+		}
+	}
+}
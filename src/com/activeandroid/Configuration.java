@@ -42,6 +42,11 @@ public class Configuration {
 	private List<Class<? extends Model>> mModelClasses;
 	private List<Class<? extends TypeSerializer>> mTypeSerializers;
 	private int mCacheSize;
+	private long mCacheSizeBytes;
+	private int mCacheConcurrencyLevel;
+	private int mQueryCacheSize;
+	private int mWriteBehindBatchSize;
+	private long mWriteBehindWindowMillis;
 
 	//////////////////////////////////////////////////////////////////////////////////////
 	// CONSTRUCTORS
@@ -83,6 +88,26 @@ public class Configuration {
 		return mCacheSize;
 	}
 
+	public long getCacheSizeBytes() {
+		return mCacheSizeBytes;
+	}
+
+	public int getCacheConcurrencyLevel() {
+		return mCacheConcurrencyLevel;
+	}
+
+	public int getQueryCacheSize() {
+		return mQueryCacheSize;
+	}
+
+	public int getWriteBehindBatchSize() {
+		return mWriteBehindBatchSize;
+	}
+
+	public long getWriteBehindWindowMillis() {
+		return mWriteBehindWindowMillis;
+	}
+
 	public boolean isValid() {
 		return mModelClasses != null && mModelClasses.size() > 0;
 	}
@@ -103,6 +128,8 @@ public class Configuration {
 		private final static String AA_SQL_PARSER = "AA_SQL_PARSER";
 
 		private static final int DEFAULT_CACHE_SIZE = 1024;
+		private static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 100;
+		private static final long DEFAULT_WRITE_BEHIND_WINDOW_MILLIS = 100;
 		private static final String DEFAULT_DB_NAME = "Application.db";
 		private static final String DEFAULT_SQL_PARSER = SQL_PARSER_LEGACY;
 
@@ -113,6 +140,11 @@ public class Configuration {
 		private Context mContext;
 
 		private Integer mCacheSize;
+		private long mCacheSizeBytes;
+		private int mCacheConcurrencyLevel = 1;
+		private int mQueryCacheSize;
+		private int mWriteBehindBatchSize = DEFAULT_WRITE_BEHIND_BATCH_SIZE;
+		private long mWriteBehindWindowMillis = DEFAULT_WRITE_BEHIND_WINDOW_MILLIS;
 		private String mDatabaseName;
 		private Integer mDatabaseVersion;
 		private String mSqlParser;
@@ -137,6 +169,68 @@ public class Configuration {
 			return this;
 		}
 
+		/**
+		 * Bound the entity cache by the estimated heap used by the cached models, in addition to
+		 * their number: least recently used models are evicted when the total would exceed
+		 * {@code cacheSizeBytes}. Sizes are estimated by {@link TableInfo#estimateSize(Model)}.
+		 * The default, 0, only bounds the number of models.
+		 */
+		public Builder setCacheSizeBytes(long cacheSizeBytes) {
+			mCacheSizeBytes = cacheSizeBytes;
+			return this;
+		}
+
+		/**
+		 * Number of threads expected to load models at the same time. The entity cache is split
+		 * in as many independently locked stripes, rounded up to a power of two, each evicting
+		 * its own least recently used models. The default, 1, is one cache with an exact LRU order.
+		 */
+		public Builder setCacheConcurrencyLevel(int concurrencyLevel) {
+			if (concurrencyLevel < 1) {
+				throw new IllegalArgumentException("concurrencyLevel < 1");
+			}
+			mCacheConcurrencyLevel = concurrencyLevel;
+			return this;
+		}
+
+		/**
+		 * Keep the results of up to {@code queryCacheSize} queries, by SQL and arguments, until
+		 * one of the tables they read is written. Cached lists hold the same model instances as
+		 * the entity cache, so changes made to them and not saved are visible to later queries.
+		 * The default, 0, disables the query cache.
+		 */
+		public Builder setQueryCacheSize(int queryCacheSize) {
+			if (queryCacheSize < 0) {
+				throw new IllegalArgumentException("queryCacheSize < 0");
+			}
+			mQueryCacheSize = queryCacheSize;
+			return this;
+		}
+
+		/**
+		 * Models saved with {@link Model#saveLater()} are written in transactions of at most
+		 * {@code batchSize} models, as soon as that many are queued. The default is 100.
+		 */
+		public Builder setWriteBehindBatchSize(int batchSize) {
+			if (batchSize < 1) {
+				throw new IllegalArgumentException("batchSize < 1");
+			}
+			mWriteBehindBatchSize = batchSize;
+			return this;
+		}
+
+		/**
+		 * Time after the first {@link Model#saveLater()} of a batch at which the batch is written,
+		 * during which later saves of the same models are coalesced. The default is 100 ms.
+		 */
+		public Builder setWriteBehindWindowMillis(long windowMillis) {
+			if (windowMillis < 0) {
+				throw new IllegalArgumentException("windowMillis < 0");
+			}
+			mWriteBehindWindowMillis = windowMillis;
+			return this;
+		}
+
 		public Builder setDatabaseName(String databaseName) {
 			mDatabaseName = databaseName;
 			return this;
@@ -201,6 +295,11 @@ public class Configuration {
 		public Configuration create() {
 			Configuration configuration = new Configuration(mContext);
 			configuration.mCacheSize = mCacheSize;
+			configuration.mCacheSizeBytes = mCacheSizeBytes;
+			configuration.mCacheConcurrencyLevel = mCacheConcurrencyLevel;
+			configuration.mQueryCacheSize = mQueryCacheSize;
+			configuration.mWriteBehindBatchSize = mWriteBehindBatchSize;
+			configuration.mWriteBehindWindowMillis = mWriteBehindWindowMillis;
 
 			// Get database name from meta-data
 			if (mDatabaseName != null) {
@@ -0,0 +1,112 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.Cursor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cursor column index of every column of a table, resolved once per {@link Cursor} and reused
+ * for all of its rows.
+ * <p>
+ * When the cursor has multiple columns with the same name obtained from join tables, the first
+ * one wins, to fix issue #106 (https://github.com/pardom/ActiveAndroid/issues/106).
+ */
+public final class CursorProjection {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final TableInfo mTableInfo;
+	private final int mIdIndex;
+	private final int[] mCodecIndexes;
+	private final int[] mBinderIndexes;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public CursorProjection(TableInfo tableInfo, Cursor cursor) {
+		mTableInfo = tableInfo;
+
+		final String[] columnNames = cursor.getColumnNames();
+		final Map<String, Integer> columnIndexes = new HashMap<String, Integer>(columnNames.length * 2);
+		for (int i = columnNames.length - 1; i >= 0; i--) {
+			columnIndexes.put(columnNames[i], i);
+		}
+
+		mIdIndex = indexOf(columnIndexes, tableInfo.getIdName());
+
+		final ColumnCodec[] codecs = tableInfo.getCodecs();
+		mCodecIndexes = new int[codecs.length];
+		for (int i = 0; i < codecs.length; i++) {
+			mCodecIndexes[i] = indexOf(columnIndexes, codecs[i].getColumnName());
+		}
+
+		final ModelBinder<Model> binder = tableInfo.getBinder();
+		if (binder != null) {
+			final String[] binderColumns = binder.getColumnNames();
+			mBinderIndexes = new int[binderColumns.length];
+			for (int i = 0; i < binderColumns.length; i++) {
+				mBinderIndexes[i] = indexOf(columnIndexes, binderColumns[i]);
+			}
+		}
+		else {
+			mBinderIndexes = null;
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public TableInfo getTableInfo() {
+		return mTableInfo;
+	}
+
+	/**
+	 * Index of the id column, or -1 if the cursor doesn't contain it.
+	 */
+	public int getIdIndex() {
+		return mIdIndex;
+	}
+
+	/**
+	 * Index of each column of {@link TableInfo#getCodecs()}, or -1.
+	 */
+	public int[] getCodecIndexes() {
+		return mCodecIndexes;
+	}
+
+	/**
+	 * Index of each column of {@link ModelBinder#getColumnNames()}, or null without binder.
+	 */
+	public int[] getBinderIndexes() {
+		return mBinderIndexes;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static int indexOf(Map<String, Integer> columnIndexes, String columnName) {
+		final Integer index = columnIndexes.get(columnName);
+		return index != null ? index : -1;
+	}
+}
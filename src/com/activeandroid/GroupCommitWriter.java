@@ -0,0 +1,306 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.sqlite.SQLiteTransactionListener;
+
+import com.activeandroid.sqlbrite.BriteDatabase;
+import com.activeandroid.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs write units submitted by any thread on one writer thread, all the units queued while the
+ * previous transaction committed in one transaction, so that threads writing a few rows each share
+ * the cost of a commit instead of each paying for its own:
+ *
+ * <pre>{@code
+ * Future<Void> done = ActiveAndroid.getGroupCommitWriter().submit(new GroupCommitWriter.Unit() {
+ *     public void write(BriteDatabase db) {
+ *         item.save();
+ *         log.save();
+ *     }
+ * });
+ * }</pre>
+ *
+ * The future of a unit completes once its transaction is committed, or with the exception it
+ * threw. A unit which throws doesn't fail the others: its writes are rolled back to a savepoint
+ * taken before it, and the models it saved or deleted get back the ids and snapshots they had.
+ * <p>
+ * A unit which fails in a nested transaction, as when {@link Model#saveAll} throws, rolls back
+ * the whole transaction though: the units which succeeded then run again in a new transaction,
+ * after their models were given back their ids and snapshots. Changes a unit makes outside of
+ * the models it writes aren't undone.
+ * <p>
+ * Waiting for a future in a unit or in a transaction of the waiting thread would deadlock.
+ */
+public final class GroupCommitWriter {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/** Units run in one transaction at most. */
+	public static final int MAX_UNITS_PER_TRANSACTION = 256;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final String SAVEPOINT = "group_commit_unit";
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	// Guarded by this
+	private final ArrayDeque<Pending> mQueue = new ArrayDeque<Pending>();
+	private ExecutorService mExecutor;
+	private boolean mDraining;
+
+	private final Runnable mDrainTask = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	GroupCommitWriter() {
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Queue {@code unit} to run in the next transaction of the writer thread.
+	 *
+	 * @return completed once the transaction which ran the unit is committed
+	 */
+	public synchronized Future<Void> submit(Unit unit) {
+		if (unit == null) {
+			throw new NullPointerException("unit == null");
+		}
+
+		final Pending pending = new Pending(unit);
+		mQueue.add(pending);
+		if (!mDraining) {
+			mDraining = true;
+			executor().execute(mDrainTask);
+		}
+		return pending.mFuture;
+	}
+
+	/**
+	 * Run the queued units and stop the writer thread.
+	 */
+	void shutdown() {
+		final ExecutorService executor;
+		synchronized (this) {
+			executor = mExecutor;
+			mExecutor = null;
+		}
+		if (executor == null) {
+			return;
+		}
+
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private ExecutorService executor() {
+		if (mExecutor == null) {
+			mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					final Thread thread = new Thread(runnable, "ActiveAndroid-GroupCommit");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return mExecutor;
+	}
+
+	private void drain() {
+		while (true) {
+			final List<Pending> batch = new ArrayList<Pending>();
+			synchronized (this) {
+				while (batch.size() < MAX_UNITS_PER_TRANSACTION && !mQueue.isEmpty()) {
+					batch.add(mQueue.poll());
+				}
+				if (batch.isEmpty()) {
+					mDraining = false;
+					return;
+				}
+			}
+			write(batch);
+		}
+	}
+
+	/**
+	 * Run {@code batch} in one transaction, each unit after a savepoint which it is rolled back
+	 * to when it throws.
+	 */
+	private void write(List<Pending> batch) {
+		final BriteDatabase db = Cache.openDatabase();
+		List<Pending> remaining = batch;
+		while (!remaining.isEmpty()) {
+			final List<Pending> written = new ArrayList<Pending>(remaining.size());
+			final List<WriteJournal> journals = new ArrayList<WriteJournal>(remaining.size());
+			final Outcome outcome = new Outcome();
+
+			try {
+				final BriteDatabase.Transaction transaction = db.newTransaction(outcome);
+				try {
+					for (Pending pending : remaining) {
+						if (writeUnit(db, pending)) {
+							written.add(pending);
+							journals.add(pending.mJournal);
+						}
+					}
+					transaction.markSuccessful();
+				}
+				finally {
+					transaction.end();
+				}
+			}
+			catch (RuntimeException e) {
+				// The transaction couldn't begin, commit or use savepoints, no unit is to blame
+				Log.e("Failed to commit " + remaining.size() + " write units", e);
+				for (WriteJournal journal : journals) {
+					journal.rollback();
+				}
+				for (Pending pending : remaining) {
+					pending.mFuture.setException(e);
+				}
+				return;
+			}
+
+			if (outcome.mCommitted) {
+				for (Pending pending : written) {
+					pending.mFuture.set(null);
+				}
+				return;
+			}
+
+			// A nested transaction of a failed unit rolled back everything, savepoints included
+			for (WriteJournal journal : journals) {
+				journal.rollback();
+			}
+			if (written.size() == remaining.size()) {
+				final IllegalStateException e = new IllegalStateException(
+						"A write unit ended a nested transaction without marking it successful");
+				for (Pending pending : remaining) {
+					pending.mFuture.setException(e);
+				}
+				return;
+			}
+			remaining = written;
+		}
+	}
+
+	/**
+	 * @return false if the unit threw, its writes were then rolled back and its future failed
+	 */
+	private static boolean writeUnit(BriteDatabase db, Pending pending) {
+		pending.mJournal = WriteJournal.open();
+		try {
+			db.execute("SAVEPOINT " + SAVEPOINT);
+			try {
+				pending.mUnit.write(db);
+			}
+			catch (Throwable e) {
+				pending.mJournal.rollback();
+				// Before API 28, SQLiteSession takes a statement starting with "ROLLBACK" for the
+				// end of the transaction, the empty statement before it isn't
+				db.execute(";ROLLBACK TO " + SAVEPOINT);
+				db.execute("RELEASE " + SAVEPOINT);
+				pending.mFuture.setException(e);
+				return false;
+			}
+			db.execute("RELEASE " + SAVEPOINT);
+			return true;
+		}
+		finally {
+			pending.mJournal.close();
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// INNER CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public interface Unit {
+		/**
+		 * Write rows, in the transaction of the writer thread. Throwing rolls back the writes of
+		 * the unit only.
+		 */
+		void write(BriteDatabase db);
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final class Pending {
+		private final Unit mUnit;
+		private final WriteFuture<Void> mFuture = new WriteFuture<Void>();
+		/** Models written by the last run of the unit. */
+		private WriteJournal mJournal;
+
+		Pending(Unit unit) {
+			mUnit = unit;
+		}
+	}
+
+	private static final class Outcome implements SQLiteTransactionListener {
+		private boolean mCommitted;
+
+		@Override
+		public void onBegin() {
+		}
+
+		@Override
+		public void onCommit() {
+			mCommitted = true;
+		}
+
+		@Override
+		public void onRollback() {
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.activeandroid.util.BinderUtils;
+
+/**
+ * Foreign key column which loads the referenced model on first {@link #get()} instead of with
+ * the row holding it:
+ *
+ * <pre>{@code
+ * @Column(name = "Author")
+ * public Lazy<Author> author;
+ * }</pre>
+ *
+ * The column is stored like a {@code Model} column, as the id of the referenced row.
+ */
+public final class Lazy<T extends Model> {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final Class<T> mType;
+	private final Long mId;
+	private T mEntity;
+	private boolean mLoaded;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Reference to the row {@code id} of the table of {@code type}, loaded on first {@link #get()}.
+	 */
+	public Lazy(Class<T> type, long id) {
+		mType = type;
+		mId = id;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Lazy(T entity) {
+		mType = (Class<T>) entity.getClass();
+		mId = null;
+		mEntity = entity;
+		mLoaded = true;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Reference to a model which is already loaded, or not saved yet.
+	 */
+	public static <T extends Model> Lazy<T> of(T entity) {
+		return entity != null ? new Lazy<T>(entity) : null;
+	}
+
+	public Class<T> getType() {
+		return mType;
+	}
+
+	/**
+	 * Id of the referenced row, without loading it.
+	 */
+	public Long getId() {
+		return mId != null ? mId : mEntity.getId();
+	}
+
+	/**
+	 * The referenced model, from the cache or loaded with one query the first time. Null if the
+	 * row doesn't exist.
+	 */
+	public synchronized T get() {
+		if (!mLoaded) {
+			mEntity = BinderUtils.loadReference(mType, mId);
+			mLoaded = true;
+		}
+		return mEntity;
+	}
+
+	public synchronized boolean isLoaded() {
+		return mLoaded;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// OVERRIDEN METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public String toString() {
+		return "Lazy<" + mType.getSimpleName() + ">@" + getId();
+	}
+}
@@ -0,0 +1,338 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Models by table and id, evicting the least recently used models when full: when the number of
+ * entries reaches its maximum or, with a weight budget, when their total weight would exceed
+ * it. Lookups don't
+ * allocate: entries live in parallel arrays allocated with the cache, found through an open
+ * addressing table of entry indexes and kept in recency order by a linked list of indexes.
+ * <p>
+ * Not thread safe.
+ */
+final class LruEntityCache {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int NONE = -1;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final int mMaxSize;
+	/** 0 when entries aren't weighed. */
+	private final long mMaxWeight;
+	/** 0 when entries don't expire. */
+	private final long mExpireAfterNanos;
+
+	/** Entry index + 1 by hash, 0 for free slots. Linear probing. */
+	private final int[] mSlots;
+	private final int mMask;
+
+	private final TableInfo[] mTables;
+	private final long[] mIds;
+	private final int[] mHashes;
+	private final int[] mWeights;
+	/** {@link System#nanoTime()} after which entries expire, null when they don't. */
+	private final long[] mExpiries;
+	private final Model[] mEntities;
+	private final int[] mPrevious;
+	private final int[] mNext;
+
+	/** Most recently used entry. */
+	private int mHead = NONE;
+	/** Least recently used entry, the next to be evicted. */
+	private int mTail = NONE;
+	/** Removed entries, linked by {@link #mNext}. */
+	private int mFree = NONE;
+	/** Entries used at least once, the next new entry is this one if there's no free entry. */
+	private int mAllocated;
+	private int mSize;
+	private long mWeight;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	LruEntityCache(int maxSize) {
+		this(maxSize, 0, 0);
+	}
+
+	/**
+	 * @param maxWeight total weight of the entries, 0 to only bound their number
+	 * @param expireAfterMillis age after which an entry isn't returned anymore, 0 for never
+	 */
+	LruEntityCache(int maxSize, long maxWeight, long expireAfterMillis) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+
+		mMaxSize = maxSize;
+		mMaxWeight = maxWeight;
+		mExpireAfterNanos = expireAfterMillis * 1000000L;
+
+		// At most half full, so that probe sequences stay short
+		int slots = Integer.highestOneBit(maxSize) << 2;
+		if (slots < 0) {
+			slots = 1 << 30;
+		}
+		mSlots = new int[slots];
+		mMask = slots - 1;
+
+		mTables = new TableInfo[maxSize];
+		mIds = new long[maxSize];
+		mHashes = new int[maxSize];
+		mWeights = new int[maxSize];
+		mExpiries = expireAfterMillis > 0 ? new long[maxSize] : null;
+		mEntities = new Model[maxSize];
+		mPrevious = new int[maxSize];
+		mNext = new int[maxSize];
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	Model get(TableInfo table, long id) {
+		final int slot = find(table, id, hash(table, id));
+		if (slot < 0) {
+			return null;
+		}
+
+		final int entry = mSlots[slot] - 1;
+		if (mExpiries != null && System.nanoTime() - mExpiries[entry] > 0) {
+			table.count(TableInfo.CACHE_EVICTIONS, 1);
+			removeEntry(entry);
+			return null;
+		}
+
+		moveToHead(entry);
+		return mEntities[entry];
+	}
+
+	/**
+	 * Add or replace the entry, evicting the least recently used entries to make room for its
+	 * {@code weight}. An entry heavier than the whole budget isn't added, and removes the entry it
+	 * would replace.
+	 *
+	 * @return the number of evicted entries
+	 */
+	int put(TableInfo table, long id, Model entity, int weight) {
+		final int hash = hash(table, id);
+		int slot = find(table, id, hash);
+		if (slot >= 0) {
+			final int entry = mSlots[slot] - 1;
+			if (mMaxWeight > 0) {
+				// Replaced as a new entry so that it's weighed again
+				removeEntry(entry);
+				slot = find(table, id, hash);
+			}
+			else {
+				mEntities[entry] = entity;
+				if (mExpiries != null) {
+					mExpiries[entry] = System.nanoTime() + mExpireAfterNanos;
+				}
+				moveToHead(entry);
+				return 0;
+			}
+		}
+
+		if (mMaxWeight > 0 && weight > mMaxWeight) {
+			return 0;
+		}
+
+		int evicted = 0;
+		while (mSize == mMaxSize || (mMaxWeight > 0 && mWeight + weight > mMaxWeight)) {
+			mTables[mTail].count(TableInfo.CACHE_EVICTIONS, 1);
+			removeEntry(mTail);
+			evicted++;
+		}
+		if (evicted > 0) {
+			// Removing shifts the slots, so the free slot found before may have moved
+			slot = find(table, id, hash);
+		}
+
+		final int entry = newEntry();
+		mTables[entry] = table;
+		mIds[entry] = id;
+		mHashes[entry] = hash;
+		mWeights[entry] = weight;
+		mEntities[entry] = entity;
+		if (mExpiries != null) {
+			mExpiries[entry] = System.nanoTime() + mExpireAfterNanos;
+		}
+		mSlots[~slot] = entry + 1;
+		linkHead(entry);
+		mSize++;
+		mWeight += weight;
+		table.count(TableInfo.CACHE_SIZE, 1);
+
+		return evicted;
+	}
+
+	Model remove(TableInfo table, long id) {
+		final int slot = find(table, id, hash(table, id));
+		if (slot < 0) {
+			return null;
+		}
+
+		final int entry = mSlots[slot] - 1;
+		final Model entity = mEntities[entry];
+		removeEntry(entry);
+		return entity;
+	}
+
+	void clear() {
+		for (int entry = 0; entry < mAllocated; entry++) {
+			if (mTables[entry] != null) {
+				mTables[entry].count(TableInfo.CACHE_SIZE, -1);
+			}
+		}
+
+		Arrays.fill(mSlots, 0);
+		Arrays.fill(mTables, null);
+		Arrays.fill(mEntities, null);
+		mHead = NONE;
+		mTail = NONE;
+		mFree = NONE;
+		mAllocated = 0;
+		mSize = 0;
+		mWeight = 0;
+	}
+
+	int size() {
+		return mSize;
+	}
+
+	long weight() {
+		return mWeight;
+	}
+
+	int maxSize() {
+		return mMaxSize;
+	}
+
+	/**
+	 * Hash of an entry, of which {@link StripedEntityCache} uses the high bits.
+	 */
+	static int hash(TableInfo table, long id) {
+		final int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9 + System.identityHashCode(table);
+		return h ^ (h >>> 16);
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * @return the slot of the entry, or the complement of the free slot where it would be added
+	 */
+	private int find(TableInfo table, long id, int hash) {
+		int slot = hash & mMask;
+		int value;
+		while ((value = mSlots[slot]) != 0) {
+			final int entry = value - 1;
+			if (mIds[entry] == id && mTables[entry] == table) {
+				return slot;
+			}
+			slot = (slot + 1) & mMask;
+		}
+		return ~slot;
+	}
+
+	private int newEntry() {
+		if (mFree != NONE) {
+			final int entry = mFree;
+			mFree = mNext[entry];
+			return entry;
+		}
+		return mAllocated++;
+	}
+
+	private void removeEntry(int entry) {
+		removeSlot(find(mTables[entry], mIds[entry], mHashes[entry]));
+		unlink(entry);
+		mTables[entry].count(TableInfo.CACHE_SIZE, -1);
+
+		mTables[entry] = null;
+		mEntities[entry] = null;
+		mNext[entry] = mFree;
+		mFree = entry;
+		mSize--;
+		mWeight -= mWeights[entry];
+	}
+
+	/**
+	 * Free {@code slot}, moving back the following entries of its probe sequence so that none of
+	 * them is separated from its hash slot by a free slot.
+	 */
+	private void removeSlot(int slot) {
+		int gap = slot;
+		int next = (slot + 1) & mMask;
+		int value;
+		while ((value = mSlots[next]) != 0) {
+			final int ideal = mHashes[value - 1] & mMask;
+			if (((next - ideal) & mMask) >= ((next - gap) & mMask)) {
+				mSlots[gap] = value;
+				gap = next;
+			}
+			next = (next + 1) & mMask;
+		}
+		mSlots[gap] = 0;
+	}
+
+	private void moveToHead(int entry) {
+		if (entry != mHead) {
+			unlink(entry);
+			linkHead(entry);
+		}
+	}
+
+	private void linkHead(int entry) {
+		mPrevious[entry] = NONE;
+		mNext[entry] = mHead;
+		if (mHead != NONE) {
+			mPrevious[mHead] = entry;
+		}
+		mHead = entry;
+		if (mTail == NONE) {
+			mTail = entry;
+		}
+	}
+
+	private void unlink(int entry) {
+		final int previous = mPrevious[entry];
+		final int next = mNext[entry];
+		if (previous != NONE) {
+			mNext[previous] = next;
+		}
+		else {
+			mHead = next;
+		}
+		if (next != NONE) {
+			mPrevious[next] = previous;
+		}
+		else {
+			mTail = previous;
+		}
+	}
+}
@@ -18,24 +18,29 @@ package com.activeandroid;
 
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.text.TextUtils;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 
 import com.activeandroid.content.ContentProvider;
 import com.activeandroid.query.Delete;
-import com.activeandroid.query.From;
 import com.activeandroid.query.Select;
-import com.activeandroid.serializer.TypeSerializer;
 import com.activeandroid.sqlbrite.BriteDatabase;
+import com.activeandroid.util.BinderUtils;
 import com.activeandroid.util.Log;
-import com.activeandroid.util.ReflectionUtils;
+import com.activeandroid.util.SQLiteUtils;
 import com.google.gson.annotations.SerializedName;
 import com.squareup.moshi.Json;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 @SuppressWarnings("unchecked")
 public abstract class Model {
@@ -53,6 +58,13 @@ public abstract class Model {
 
 	private final TableInfo mTableInfo;
 	private final String idName;
+
+	/** Column values when last loaded or saved, only for tables tracking changes. */
+	private transient ContentValues mSnapshot;
+
+	/** Children loaded by includeMany() and includeMany2Many(), by relation, until loaded again. */
+	private transient Map<String, Included> mIncluded;
+
 	//////////////////////////////////////////////////////////////////////////////////////
 	// CONSTRUCTORS
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -72,11 +84,19 @@ public abstract class Model {
 
 	public void setId(Long id) {
 		this.mId = id;
+		this.mSnapshot = null;
 	}
 
 	public void delete() {
+		final WriteBehindQueue writeBehindQueue = Cache.getWriteBehindQueue();
+		if (writeBehindQueue != null) {
+			writeBehindQueue.remove(this); // Not to insert the row again
+		}
+
+		WriteJournal.record(this);
 		Cache.openDatabase().delete(mTableInfo.getTableName(), idName+"=?", new String[] { getId().toString() });
 		Cache.removeEntity(this);
+		mSnapshot = null;
 
 		Cache.getContext().getContentResolver()
 				.notifyChange(ContentProvider.createUri(mTableInfo.getType(), mId), null);
@@ -84,101 +104,205 @@ public abstract class Model {
 
 	public Long save() {
 		final BriteDatabase db = Cache.openDatabase();
-		final ContentValues values = new ContentValues();
+		ContentValues values = null;
+		WriteJournal.record(this);
+
+		if (mSnapshot != null && mId != null) {
+			values = toContentValues();
+			final ContentValues changes = getChanges(values);
+			if (changes.size() == 0) {
+				return mId; // Nothing to write nor to notify
+			}
+
+			int updated = db.update(mTableInfo.getTableName(), changes, idName+"=?", new String[] { mId.toString() });
+			if (updated == 0) {
+				mId = db.insert(mTableInfo.getTableName(), values);
+			}
+		}
+		else if (!upsert(db)) {
+			values = toContentValues();
+
+			setIdFromUniqueOnUpdate(values);
 
-		for (Field field : mTableInfo.getFields()) {
-			final String fieldName = mTableInfo.getColumnName(field);
-			Class<?> fieldType = field.getType();
+			if (mId == null) {
+				mId = db.insert(mTableInfo.getTableName(), values);
+			}
+			else {
+				int updated = db.update(mTableInfo.getTableName(), values, idName+"=" + mId, null);
+				if(updated == 0) {
+					mId = db.insert(mTableInfo.getTableName(), values);
+				}
+			}
+		}
 
-			field.setAccessible(true);
+		if (mTableInfo.isTrackingChanges()) {
+			takeSnapshot(values != null ? values : toContentValues());
+		}
 
+		Cache.getContext().getContentResolver()
+				.notifyChange(ContentProvider.createUri(mTableInfo.getType(), mId), null);
+		return mId;
+	}
+
+	/**
+	 * Queue the model to be saved by a background thread, together with the other models queued
+	 * within the window of {@link Configuration.Builder#setWriteBehindWindowMillis(long)}, in one
+	 * transaction. Saving the same row again before it is written only writes its latest state.
+	 * The fields of the model are read when it is written, so it must not be modified by another
+	 * thread meanwhile. See {@link ActiveAndroid#flush()} to wait for the queued saves.
+	 *
+	 * @return the id of the model once saved
+	 */
+	public Future<Long> saveLater() {
+		final WriteBehindQueue writeBehindQueue = Cache.getWriteBehindQueue();
+		if (writeBehindQueue == null) {
+			throw new IllegalStateException("ActiveAndroid isn't initialized or was disposed");
+		}
+		return writeBehindQueue.save(this);
+	}
+
+	/**
+	 * Save all models in one transaction, with one compiled INSERT and UPDATE statement per
+	 * table. Queries and content observers are notified once per written table, after the
+	 * transaction. When it fails, the models get back the ids and snapshots they had.
+	 */
+	public static void saveAll(Collection<? extends Model> models) {
+		final Map<TableInfo, List<Model>> tables = new LinkedHashMap<TableInfo, List<Model>>();
+		for (Model model : models) {
+			List<Model> tableModels = tables.get(model.mTableInfo);
+			if (tableModels == null) {
+				tableModels = new ArrayList<Model>();
+				tables.put(model.mTableInfo, tableModels);
+			}
+			tableModels.add(model);
+		}
+
+		if (tables.isEmpty()) {
+			return;
+		}
+
+		final BriteDatabase db = Cache.openDatabase();
+		final List<TableInfo> written = new ArrayList<TableInfo>(tables.size());
+		final WriteJournal journal = WriteJournal.open();
+		try {
+			final BriteDatabase.Transaction transaction = db.newTransaction();
 			try {
-				Object value = field.get(this);
-
-				if (value != null) {
-					final TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-					if (typeSerializer != null) {
-						// serialize data
-						value = typeSerializer.serialize(value);
-						// set new object type
-						if (value != null) {
-							fieldType = value.getClass();
-							// check that the serializer returned what it promised
-							if (!fieldType.equals(typeSerializer.getSerializedType())) {
-								Log.w(String.format("TypeSerializer returned wrong type: expected a %s but got a %s",
-										typeSerializer.getSerializedType(), fieldType));
-							}
-						}
+				for (Map.Entry<TableInfo, List<Model>> entry : tables.entrySet()) {
+					if (saveAll(db, entry.getKey(), entry.getValue())) {
+						written.add(entry.getKey());
 					}
 				}
+				transaction.markSuccessful();
+			}
+			finally {
+				transaction.end();
+			}
+		}
+		catch (RuntimeException e) {
+			journal.rollback();
+			throw e;
+		}
+		finally {
+			journal.close();
+		}
 
-				// TODO: Find a smarter way to do this? This if block is necessary because we
-				// can't know the type until runtime.
-				if (value == null) {
-					values.putNull(fieldName);
-				}
-				else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-					values.put(fieldName, (Byte) value);
-				}
-				else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-					values.put(fieldName, (Short) value);
-				}
-				else if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-					values.put(fieldName, (Integer) value);
-				}
-				else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-					values.put(fieldName, (Long) value);
-				}
-				else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-					values.put(fieldName, (Float) value);
-				}
-				else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-					values.put(fieldName, (Double) value);
-				}
-				else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-					values.put(fieldName, (Boolean) value);
-				}
-				else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-					values.put(fieldName, value.toString());
-				}
-				else if (fieldType.equals(String.class)) {
-					values.put(fieldName, value.toString());
-				}
-				else if (fieldType.equals(Byte[].class) || fieldType.equals(byte[].class)) {
-					values.put(fieldName, (byte[]) value);
+		for (TableInfo tableInfo : written) {
+			Cache.getContext().getContentResolver()
+					.notifyChange(ContentProvider.createUri(tableInfo.getType(), null), null);
+		}
+	}
+
+	/**
+	 * @return false if all models were unchanged and nothing was written
+	 */
+	private static boolean saveAll(BriteDatabase db, TableInfo tableInfo, List<Model> models) {
+		final String tableName = tableInfo.getTableName();
+		final int idIndex = tableInfo.getBoundColumnNames().length + 1;
+		final SQLiteStatement insert = db.compileStatement(SQLiteUtils.createInsertSql(tableInfo));
+		final SQLiteStatement update = db.compileStatement(SQLiteUtils.createUpdateSql(tableInfo));
+
+		boolean written = false;
+		try {
+			for (Model model : models) {
+				if (model.mSnapshot != null && model.mId != null
+						&& model.getChanges(model.toContentValues()).size() == 0) {
+					continue; // Unchanged since loaded or saved
 				}
-				else if (ReflectionUtils.isModel(fieldType)) {
-					values.put(fieldName, ((Model) value).getId());
+
+				written = true;
+				WriteJournal.record(model);
+				if (!model.upsert(db)) {
+					model.insertOrUpdate(db, tableName, insert, update, idIndex);
 				}
-				else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class)) {
-					values.put(fieldName, ((Enum<?>) value).name());
+
+				if (tableInfo.isTrackingChanges()) {
+					model.takeSnapshot(model.toContentValues());
 				}
 			}
-			catch (IllegalArgumentException e) {
-				Log.e(e.getClass().getName(), e);
-			}
-			catch (IllegalAccessException e) {
-				Log.e(e.getClass().getName(), e);
-			}
 		}
+		finally {
+			insert.close();
+			update.close();
+		}
+		return written;
+	}
 
-		setIdFromUniqueOnUpdate(values);
-
-		if (mId == null) {
-			mId = db.insert(mTableInfo.getTableName(), values);
+	private void insertOrUpdate(BriteDatabase db, String tableName, SQLiteStatement insert,
+			SQLiteStatement update, int idIndex) {
+		if (mTableInfo.hasOnUpdateFields()) {
+			setIdFromUniqueOnUpdate(toContentValues());
 		}
-		else {
-			int updated = db.update(mTableInfo.getTableName(), values, idName+"=" + mId, null);
-			if(updated == 0) {
-				mId = db.insert(mTableInfo.getTableName(), values);
+
+		if (mId != null) {
+			bindStatement(update);
+			update.bindLong(idIndex, mId);
+			if (db.executeUpdateDelete(tableName, update) > 0) {
+				return;
 			}
 		}
 
-		Cache.getContext().getContentResolver()
-				.notifyChange(ContentProvider.createUri(mTableInfo.getType(), mId), null);
-		return mId;
+		bindStatement(insert);
+		mId = db.executeInsert(tableName, insert);
 	}
 
+	/**
+	 * Insert the model, or update the row with the same "unique" fields with "update" action, in
+	 * one statement.
+	 *
+	 * @return false when the model must be saved with {@link #setIdFromUniqueOnUpdate} instead
+	 */
+	private boolean upsert(BriteDatabase db) {
+		if (mId != null && mId != -1) { // Primary key is set yet
+			return false;
+		}
+
+		final String sql = mTableInfo.getUpsertSql();
+		if (sql == null) {
+			return false;
+		}
+
+		final SQLiteStatement statement;
+		try {
+			statement = db.getCachedStatement(sql);
+		}
+		catch (SQLiteException e) {
+			// No UNIQUE constraint matches the conflict targets, e.g. created by an older schema
+			Log.w("Can't upsert into " + mTableInfo.getTableName() + ", looking up UNIQUE columns instead", e);
+			mTableInfo.disableUpsert();
+			return false;
+		}
+
+		synchronized (statement) {
+			try {
+				bindStatement(statement);
+				mId = db.executeUpsert(mTableInfo.getTableName(), statement);
+			}
+			finally {
+				statement.clearBindings();
+			}
+		}
+		return true;
+	}
 
 	/**
 	 * Retrieve primary key from "unique" fields with "update" action
@@ -196,41 +320,12 @@ public abstract class Model {
 			return;
 		}
 
+		final String[] columns = mTableInfo.getUniqueLookupColumns();
 		boolean executeQuery = false;
-		From query = new Select(idName).from(this.getClass());
-
-		for(Field field : mTableInfo.getUniqueFields())
-		{
-			String fieldname = mTableInfo.getColumnName(field);
-			Object value = values.get(fieldname);
-			if (value == null) {
-				continue; // Value is null
-			}
-			query.or(fieldname+"=?", values.get(fieldname));
-			executeQuery = true;
-		}
-
-		for(List<Field> fields : mTableInfo.getUniqueGroups())
-		{
-			LinkedList<String> fieldname_list = new LinkedList<String>();
-			for(Field field : fields)
-			{
-				String fieldname = mTableInfo.getColumnName(field);
-				Object value = values.get(fieldname);
-				if (value == null) {
-					continue; // Value is null
-				}
-				fieldname_list.add(fieldname);
-			}
-			if (! fieldname_list.isEmpty())
-			{
-				query.startGroupOr();
-				for(String fieldname : fieldname_list)
-				{
-					query.and(fieldname+"=?", values.get(fieldname));
-				}
-				query.endGroup();
+		for (String column : columns) {
+			if (values.get(column) != null) {
 				executeQuery = true;
+				break;
 			}
 		}
 
@@ -240,21 +335,125 @@ public abstract class Model {
 			return;
 		}
 
-		String sqlQuery = query.toSql();
-		Cursor cursor = Cache.openDatabase().query(sqlQuery, query.getArguments());
-		Log.v("Get ID from UNIQUE columns\nQuery "+sqlQuery+"\nArguments: "+ TextUtils.join(",", query.getArguments()));
-
-		if (cursor != null) {
-			cursor.moveToFirst();
-			if (cursor.getCount() > 0 && cursor.getColumnCount() > 0)
-			{
-				mId = cursor.getLong(cursor.getColumnIndex(idName));
+		// A null value never matches, like SQLite never sees NULLs as duplicates
+		final SQLiteStatement statement = Cache.openDatabase().getCachedStatement(mTableInfo.getUniqueLookupSql());
+		synchronized (statement) {
+			try {
+				for (int i = 0; i < columns.length; i++) {
+					BinderUtils.bindValue(statement, i + 1, values.get(columns[i]));
+				}
+				mId = statement.simpleQueryForLong();
 				if (values.containsKey(idName))
 				{
 					values.put(idName, mId);
 				}
 			}
-			cursor.close();
+			catch (SQLiteDoneException e) {
+				// No row with the same UNIQUE values
+			}
+			finally {
+				statement.clearBindings();
+			}
+		}
+	}
+
+	private ContentValues toContentValues() {
+		final ContentValues values = new ContentValues();
+
+		final ModelBinder<Model> binder = mTableInfo.getBinder();
+		if (binder != null) {
+			binder.toContentValues(this, values);
+		}
+		else {
+			for (ColumnCodec codec : mTableInfo.getCodecs()) {
+				try {
+					codec.write(this, values);
+				}
+				catch (IllegalArgumentException e) {
+					Log.e(e.getClass().getName(), e);
+				}
+				catch (IllegalAccessException e) {
+					Log.e(e.getClass().getName(), e);
+				}
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Keep {@code values} as the last known state of the row. Blobs are copied since they can be
+	 * modified in place.
+	 */
+	private void takeSnapshot(ContentValues values) {
+		for (Map.Entry<String, Object> entry : values.valueSet()) {
+			if (entry.getValue() instanceof byte[]) {
+				entry.setValue(((byte[]) entry.getValue()).clone());
+			}
+		}
+		mSnapshot = values;
+	}
+
+	ContentValues getSnapshot() {
+		return mSnapshot;
+	}
+
+	/**
+	 * Give back the id and snapshot of the model before writes which were rolled back.
+	 */
+	void restore(Long id, ContentValues snapshot) {
+		mId = id;
+		mSnapshot = snapshot;
+	}
+
+	/**
+	 * Entries of {@code values} which differ from the snapshot.
+	 */
+	private ContentValues getChanges(ContentValues values) {
+		final ContentValues changes = new ContentValues();
+		for (Map.Entry<String, Object> entry : values.valueSet()) {
+			final Object value = entry.getValue();
+			final Object previous = mSnapshot.get(entry.getKey());
+
+			final boolean changed;
+			if (value instanceof byte[] && previous instanceof byte[]) {
+				changed = !Arrays.equals((byte[]) value, (byte[]) previous);
+			}
+			else if (value == null) {
+				changed = previous != null || !mSnapshot.containsKey(entry.getKey());
+			}
+			else {
+				changed = !value.equals(previous);
+			}
+
+			if (changed) {
+				BinderUtils.putValue(changes, entry.getKey(), value);
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Bind the columns of {@link TableInfo#getBoundColumnNames()} to the first parameters.
+	 */
+	private void bindStatement(SQLiteStatement statement) {
+		final ModelBinder<Model> binder = mTableInfo.getBinder();
+		if (binder != null) {
+			binder.bindStatement(this, statement);
+		}
+		else {
+			final ColumnCodec[] codecs = mTableInfo.getCodecs();
+			for (int i = 0; i < codecs.length; i++) {
+				try {
+					codecs[i].bind(this, statement, i + 1);
+				}
+				catch (IllegalArgumentException e) {
+					Log.e(e.getClass().getName(), e);
+				}
+				catch (IllegalAccessException e) {
+					Log.e(e.getClass().getName(), e);
+				}
+			}
 		}
 	}
 
@@ -266,112 +465,177 @@ public abstract class Model {
 	}
 
 	public static <T extends Model> T load(Class<T> type, long id) {
-		TableInfo tableInfo = Cache.getTableInfo(type);
-		return (T) new Select().from(type).where(tableInfo.getIdName()+"=?", id).executeSingle();
+		return (T) Cache.getTableInfo(type).getLoadQuery().bind(id).executeSingle();
 	}
 
-	// Model population
+	/**
+	 * Load the {@code type} children of all {@code models} with one query per 500 models, so that
+	 * {@link #getMany(Class, String)} returns them without querying, until the model is loaded
+	 * again or the table of the children is written.
+	 */
+	public static <T extends Model> void includeMany(List<? extends Model> models, Class<T> type, String foreignKey) {
+		final Map<Long, List<Model>> children = newChildLists(models);
+		if (children.isEmpty()) {
+			return;
+		}
+		// Before loading, so that a write made meanwhile makes the children stale
+		final TableInfo[] tables = { Cache.getTableInfo(type) };
+		final long[] versions = getWriteVersions(tables);
 
-	public final void loadFromCursor(Cursor cursor) {
-		/**
-		 * Obtain the columns ordered to fix issue #106 (https://github.com/pardom/ActiveAndroid/issues/106)
-		 * when the cursor have multiple columns with same name obtained from join tables.
-		 */
-		List<String> columnsOrdered = new ArrayList<String>(Arrays.asList(cursor.getColumnNames()));
-		for (Field field : mTableInfo.getFields()) {
-			final String fieldName = mTableInfo.getColumnName(field);
-			Class<?> fieldType = field.getType();
-			final int columnIndex = columnsOrdered.indexOf(fieldName);
-
-			if (columnIndex < 0) {
-				continue;
+		final Field field = Cache.getTableInfo(type).getField(foreignKey);
+		if (field == null) {
+			Log.e("No column " + foreignKey + " in " + type.getName());
+			return;
+		}
+		field.setAccessible(true);
+
+		final String column = Cache.getTableName(type) + "." + foreignKey;
+		try {
+			for (List<Long> ids : chunks(children.keySet())) {
+				final List<T> loaded = new Select().from(type).in(column, ids).execute();
+				for (T child : loaded) {
+					final List<Model> siblings = children.get(getReferencedId(field.get(child)));
+					if (siblings != null) {
+						siblings.add(child);
+					}
+				}
 			}
+		}
+		catch (IllegalAccessException e) {
+			Log.e(e.getClass().getName(), e);
+			return;
+		}
 
-			field.setAccessible(true);
+		attach(models, getManyKey(type, foreignKey), children, tables, versions);
+	}
 
-			try {
-				boolean columnIsNull = cursor.isNull(columnIndex);
-				TypeSerializer typeSerializer = Cache.getParserForType(fieldType);
-				Object value = null;
+	/**
+	 * Load the {@code target} models linked to all {@code models} through {@code link}, so that
+	 * {@link #getMany2Many(Class, Class)} returns them without querying, until the model is loaded
+	 * again or the link or target table is written.
+	 */
+	public static <T extends Model, L extends Model> void includeMany2Many(List<? extends Model> models,
+			Class<T> target, Class<L> link) {
+		if (models.isEmpty()) {
+			return;
+		}
 
-				if (typeSerializer != null) {
-					fieldType = typeSerializer.getSerializedType();
-				}
+		final String[] linkColumns = findLinkColumns(models.get(0).getClass(), target, link);
+		if (linkColumns != null) {
+			includeMany2Many(models, target, link, linkColumns[0], linkColumns[1]);
+		}
+	}
 
-				// TODO: Find a smarter way to do this? This if block is necessary because we
-				// can't know the type until runtime.
-				if (columnIsNull) {
-					field = null;
-				}
-				else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-					value = cursor.getInt(columnIndex);
-				}
-				else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-					value = cursor.getInt(columnIndex);
-				}
-				else if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-					value = cursor.getInt(columnIndex);
-				}
-				else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-					value = cursor.getLong(columnIndex);
-				}
-				else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-					value = cursor.getFloat(columnIndex);
-				}
-				else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-					value = cursor.getDouble(columnIndex);
-				}
-				else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-					value = cursor.getInt(columnIndex) != 0;
-				}
-				else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-					value = cursor.getString(columnIndex).charAt(0);
-				}
-				else if (fieldType.equals(String.class)) {
-					value = cursor.getString(columnIndex);
+	/**
+	 * Load the {@code target} models linked to all {@code models} through {@code link}, with one
+	 * query on the link table per 500 models and one for the targets, so that
+	 * {@link #getMany2Many(Class, Class, String, String)} returns them without querying.
+	 */
+	public static <T extends Model, L extends Model> void includeMany2Many(List<? extends Model> models,
+			Class<T> target, Class<L> link, String link2local, String link2target) {
+		final Map<Long, List<Model>> targets = newChildLists(models);
+		if (targets.isEmpty()) {
+			return;
+		}
+		final TableInfo[] tables = { Cache.getTableInfo(link), Cache.getTableInfo(target) };
+		final long[] versions = getWriteVersions(tables);
+
+		final TableInfo linkInfo = Cache.getTableInfo(link);
+		final Field localField = linkInfo.getField(link2local);
+		final Field targetField = linkInfo.getField(link2target);
+		if (localField == null || targetField == null) {
+			Log.e("No column " + link2local + " or " + link2target + " in " + link.getName());
+			return;
+		}
+		localField.setAccessible(true);
+		targetField.setAccessible(true);
+
+		final String column = Cache.getTableName(link) + "." + link2local;
+		try {
+			for (List<Long> ids : chunks(targets.keySet())) {
+				// The targets of all links are loaded together with the links
+				final List<L> links = new Select().from(link).in(column, ids).execute();
+				for (L linkModel : links) {
+					final List<Model> linked = targets.get(getReferencedId(localField.get(linkModel)));
+					final Model entity = getReferenced(target, targetField.get(linkModel));
+					if (linked != null && entity != null) {
+						linked.add(entity);
+					}
 				}
-				else if (fieldType.equals(Byte[].class) || fieldType.equals(byte[].class)) {
-					value = cursor.getBlob(columnIndex);
+			}
+		}
+		catch (IllegalAccessException e) {
+			Log.e(e.getClass().getName(), e);
+			return;
+		}
+
+		attach(models, getMany2ManyKey(target, link, link2local, link2target), targets, tables, versions);
+	}
+
+	// Model population
+
+	public final void loadFromCursor(Cursor cursor) {
+		loadFromCursor(cursor, new CursorProjection(mTableInfo, cursor));
+	}
+
+	/**
+	 * Load the current row of {@code cursor} with column indexes resolved once for the cursor.
+	 */
+	public final void loadFromCursor(Cursor cursor, CursorProjection projection) {
+		loadFromCursor(cursor, projection, true);
+	}
+
+	/**
+	 * @param cache whether to add the model to the identity cache
+	 */
+	final void loadFromCursor(Cursor cursor, CursorProjection projection, boolean cache) {
+		final long start = System.nanoTime();
+		mIncluded = null;
+		// A model loaded again, from the entity cache or as a flyweight, must not keep the values
+		// of its previous row for NULL columns. A new model keeps its initial values.
+		final boolean reused = mId != null;
+
+		final ModelBinder<Model> binder = mTableInfo.getBinder();
+		if (binder != null) {
+			binder.loadFromCursor(this, cursor, projection.getBinderIndexes());
+		}
+		else {
+			final ColumnCodec[] codecs = mTableInfo.getCodecs();
+			final int[] columnIndexes = projection.getCodecIndexes();
+			for (int i = 0; i < codecs.length; i++) {
+				final int columnIndex = columnIndexes[i];
+				if (columnIndex < 0) {
+					continue;
 				}
-				else if (ReflectionUtils.isModel(fieldType)) {
-					final long entityId = cursor.getLong(columnIndex);
-					final Class<? extends Model> entityType = (Class<? extends Model>) fieldType;
 
-					Model entity = Cache.getEntity(entityType, entityId);
-					if (entity == null) {
-						entity = new Select().from(entityType).where(idName+"=?", entityId).executeSingle();
+				try {
+					if (!cursor.isNull(columnIndex)) {
+						codecs[i].read(this, cursor, columnIndex);
+					}
+					else if (reused) {
+						codecs[i].readNull(this);
 					}
-
-					value = entity;
 				}
-				else if (ReflectionUtils.isSubclassOf(fieldType, Enum.class)) {
-					@SuppressWarnings("rawtypes")
-					final Class<? extends Enum> enumType = (Class<? extends Enum>) fieldType;
-					value = Enum.valueOf(enumType, cursor.getString(columnIndex));
+				catch (IllegalArgumentException e) {
+					Log.e(e.getClass().getName(), e);
 				}
-
-				// Use a deserializer if one is available
-				if (typeSerializer != null && !columnIsNull) {
-					value = typeSerializer.deserialize(value);
+				catch (IllegalAccessException e) {
+					Log.e(e.getClass().getName(), e);
 				}
-
-				// Set the field value
-				if (value != null) {
-					field.set(this, value);
+				catch (SecurityException e) {
+					Log.e(e.getClass().getName(), e);
 				}
 			}
-			catch (IllegalArgumentException e) {
-				Log.e(e.getClass().getName(), e);
-			}
-			catch (IllegalAccessException e) {
-				Log.e(e.getClass().getName(), e);
-			}
-			catch (SecurityException e) {
-				Log.e(e.getClass().getName(), e);
-			}
 		}
 
-		if (mId != null) {
+		if (mTableInfo.isTrackingChanges()) {
+			takeSnapshot(toContentValues());
+		}
+
+		mTableInfo.count(TableInfo.LOADS, 1);
+		mTableInfo.count(TableInfo.LOAD_NANOS, System.nanoTime() - start);
+
+		if (cache && mId != null) {
 			Cache.addEntity(this);
 		}
 	}
@@ -381,11 +645,52 @@ public abstract class Model {
 	//////////////////////////////////////////////////////////////////////////////////////
 
 	protected final <T extends Model> List<T> getMany(Class<T> type, String foreignKey) {
+		final List<T> included = getIncluded(getManyKey(type, foreignKey));
+		if (included != null) {
+			return included;
+		}
+
 		return new Select().from(type).where(Cache.getTableName(type) + "." + foreignKey + "=?", getId()).execute();
 	}
 
 
 	protected <T extends Model, L extends Model> List<T> getMany2Many(Class<T> target, Class<L> link)	{
+		String[] linkColumns = findLinkColumns(this.getClass(), target, link);
+
+		if (linkColumns != null) {
+			return getMany2Many(target, link, linkColumns[0], linkColumns[1]);
+		}
+
+		return null;
+	}
+
+	protected <T extends Model, L extends Model> List<T> getMany2Many(Class<T> target, Class<L> link, String link2local, String link2target) {
+		final List<T> included = getIncluded(getMany2ManyKey(target, link, link2local, link2target));
+		if (included != null) {
+			return included;
+		}
+
+		return new Select()
+				.from(target)
+				.innerJoin(link)
+				.on(
+						Cache.getTableName(target)+"."+Cache.getTableInfo(target).getIdName()+
+						"="+
+						Cache.getTableName(link)+"."+link2target
+				)
+				.where(Cache.getTableName(link)+"."+link2local+"= ?", this.getId())
+				.execute();
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Columns of {@code link} referencing {@code local} and {@code target}, or null.
+	 */
+	private static String[] findLinkColumns(Class<? extends Model> local, Class<? extends Model> target,
+			Class<? extends Model> link) {
 		Field[] field_list = link.getFields();
 
 		// Get columns of linking object - To current objet - To target object
@@ -393,7 +698,7 @@ public abstract class Model {
 		String link2target = null;
 		for(Field field : field_list) {
 			Class clazz = field.getType();
-			if (clazz.equals(this.getClass())) {
+			if (clazz.equals(local)) {
 				link2local = Cache.getTableInfo(link).getColumnName(field);
 			} else if (clazz.equals(target)) {
 				link2target = Cache.getTableInfo(link).getColumnName(field);
@@ -401,23 +706,109 @@ public abstract class Model {
 		}
 
 		if (link2local != null && link2target != null) {
-			return getMany2Many(target, link, link2local, link2target);
+			return new String[] { link2local, link2target };
 		}
 
 		return null;
 	}
 
-	protected <T extends Model, L extends Model> List<T> getMany2Many(Class<T> target, Class<L> link, String link2local, String link2target) {
-		return new Select()
-				.from(target)
-				.innerJoin(link)
-				.on(
-						Cache.getTableName(target)+"."+Cache.getTableInfo(target).getIdName()+
-						"="+
-						Cache.getTableName(link)+"."+link2target
-				)
-				.where(Cache.getTableName(link)+"."+link2local+"= ?", this.getId())
-				.execute();
+	/**
+	 * @return null if the models weren't included or are stale
+	 */
+	private <T extends Model> List<T> getIncluded(String key) {
+		final Included included = mIncluded != null ? mIncluded.get(key) : null;
+		if (included == null) {
+			return null;
+		}
+		if (included.isStale()) {
+			mIncluded.remove(key);
+			return null;
+		}
+		return new ArrayList<T>((List<T>) included.mModels);
+	}
+
+	private static String getManyKey(Class<? extends Model> type, String foreignKey) {
+		return type.getName() + ":" + foreignKey;
+	}
+
+	private static String getMany2ManyKey(Class<? extends Model> target, Class<? extends Model> link,
+			String link2local, String link2target) {
+		return target.getName() + ":" + link.getName() + ":" + link2local + ":" + link2target;
+	}
+
+	/**
+	 * An empty list per distinct id of {@code models}.
+	 */
+	private static Map<Long, List<Model>> newChildLists(List<? extends Model> models) {
+		final Map<Long, List<Model>> children = new LinkedHashMap<Long, List<Model>>();
+		for (Model model : models) {
+			if (model.mId != null && !children.containsKey(model.mId)) {
+				children.put(model.mId, new ArrayList<Model>());
+			}
+		}
+		return children;
+	}
+
+	private static long[] getWriteVersions(TableInfo[] tables) {
+		final long[] versions = new long[tables.length];
+		for (int i = 0; i < tables.length; i++) {
+			versions[i] = tables[i].getWriteVersion();
+		}
+		return versions;
+	}
+
+	/**
+	 * @param versions write versions of {@code tables} taken before the children were read
+	 */
+	private static void attach(List<? extends Model> models, String key, Map<Long, List<Model>> children,
+			TableInfo[] tables, long[] versions) {
+		for (Model model : models) {
+			final List<Model> list = model.mId != null ? children.get(model.mId) : null;
+			if (list != null) {
+				if (model.mIncluded == null) {
+					model.mIncluded = new HashMap<String, Included>();
+				}
+				model.mIncluded.put(key, new Included(list, tables, versions));
+			}
+		}
+	}
+
+	private static List<List<Long>> chunks(Collection<Long> ids) {
+		final List<Long> all = new ArrayList<Long>(ids);
+		final List<List<Long>> chunks = new ArrayList<List<Long>>();
+		for (int i = 0; i < all.size(); i += SQLiteUtils.MAX_IN_ARGUMENTS) {
+			chunks.add(all.subList(i, Math.min(all.size(), i + SQLiteUtils.MAX_IN_ARGUMENTS)));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Id held by a foreign key field: a model, a {@link Lazy} or a plain number.
+	 */
+	private static Long getReferencedId(Object value) {
+		if (value instanceof Model) {
+			return ((Model) value).getId();
+		}
+		else if (value instanceof Lazy) {
+			return ((Lazy<?>) value).getId();
+		}
+		else if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		return null;
+	}
+
+	private static Model getReferenced(Class<? extends Model> type, Object value) {
+		if (value instanceof Model) {
+			return (Model) value;
+		}
+		else if (value instanceof Lazy) {
+			return ((Lazy<?>) value).get();
+		}
+		else if (value instanceof Number) {
+			return BinderUtils.loadReference(type, ((Number) value).longValue());
+		}
+		return null;
 	}
 
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -448,4 +839,32 @@ public abstract class Model {
 		hash += HASH_PRIME * mTableInfo.getTableName().hashCode();
 		return hash; //To change body of generated methods, choose Tools | Templates.
 	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Models attached by an include, stale once one of the tables they were read from is written.
+	 */
+	private static final class Included {
+		private final List<? extends Model> mModels;
+		private final TableInfo[] mTables;
+		private final long[] mVersions;
+
+		Included(List<? extends Model> models, TableInfo[] tables, long[] versions) {
+			mModels = models;
+			mTables = tables;
+			mVersions = versions;
+		}
+
+		boolean isStale() {
+			for (int i = 0; i < mTables.length; i++) {
+				if (mTables[i].getWriteVersion() != mVersions[i]) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
 }
@@ -0,0 +1,55 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Moves column values between a model and the database without reflection.
+ * <p>
+ * Implementations are generated at compile time by the {@code ModelBinderProcessor} of the
+ * processor artifact as {@code <Model>_ModelBinder} in the package of the model. {@link TableInfo} picks the binder up when it exists and falls back to
+ * reflection when it doesn't.
+ */
+public interface ModelBinder<T extends Model> {
+	/**
+	 * Appended to the name of a model class to get the name of its binder.
+	 */
+	public static final String BINDER_SUFFIX = "_ModelBinder";
+
+	/**
+	 * Column names handled by this binder, the id column first.
+	 */
+	public String[] getColumnNames();
+
+	public T newInstance();
+
+	public void toContentValues(T model, ContentValues values);
+
+	/**
+	 * Bind the columns of {@link #getColumnNames()} to the parameters 1 to n of {@code statement}.
+	 */
+	public void bindStatement(T model, SQLiteStatement statement);
+
+	/**
+	 * @param columnIndexes cursor index of each column of {@link #getColumnNames()}, or -1 when
+	 *                      the cursor doesn't contain it.
+	 */
+	public void loadFromCursor(T model, Cursor cursor, int[] columnIndexes);
+}
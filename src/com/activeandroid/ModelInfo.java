@@ -22,6 +22,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -43,8 +44,9 @@ final class ModelInfo {
 	// PRIVATE METHODS
 	//////////////////////////////////////////////////////////////////////////////////////
 
-	private Map<Class<? extends Model>, TableInfo> mTableInfos = new HashMap<Class<? extends Model>, TableInfo>();
-	private Map<Class<?>, TypeSerializer> mTypeSerializers = new HashMap<Class<?>, TypeSerializer>() {
+	// Only written by the constructor: once the instance is published, lookups need no lock
+	private final Map<Class<? extends Model>, TableInfo> mTableInfos = new HashMap<Class<? extends Model>, TableInfo>();
+	private final Map<Class<?>, TypeSerializer> mTypeSerializers = new HashMap<Class<?>, TypeSerializer>() {
 		{
 			put(Calendar.class, new CalendarSerializer());
 			put(java.sql.Date.class, new SqlDateSerializer());
@@ -67,6 +69,11 @@ final class ModelInfo {
 			}
 		}
 
+		// Resolve the column codecs now that all type serializers are known
+		for (TableInfo tableInfo : mTableInfos.values()) {
+			tableInfo.createCodecs(mTypeSerializers);
+		}
+
 		Log.i("ModelInfo loaded.");
 	}
 
@@ -75,7 +82,7 @@ final class ModelInfo {
 	//////////////////////////////////////////////////////////////////////////////////////
 
 	public Collection<TableInfo> getTableInfos() {
-		return mTableInfos.values();
+		return Collections.unmodifiableCollection(mTableInfos.values());
 	}
 
 	public TableInfo getTableInfo(Class<? extends Model> type) {
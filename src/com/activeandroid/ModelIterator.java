@@ -0,0 +1,160 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Models of the rows of a live {@link Cursor}, loaded one at a time instead of into a list, so
+ * that a pass over a whole table runs in constant memory.
+ * <p>
+ * The cursor is closed when the last row has been read, or by {@link #close()} when the
+ * iteration stops early. Foreign keys are resolved per row, not batched like in
+ * {@code From.execute()}.
+ */
+public final class ModelIterator<T extends Model> implements Iterator<T>, Closeable {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// ENUMERATIONS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public enum Mode {
+		/** Models come from and go to the identity cache, like with {@code From.execute()}. */
+		CACHED,
+		/** A new model per row which doesn't go through the cache. */
+		UNCACHED,
+		/**
+		 * One model reloaded for each row and never cached: a model must not be kept once
+		 * {@link #next()} is called again.
+		 */
+		FLYWEIGHT
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final Class<T> mType;
+	private final Cursor mCursor;
+	private final Mode mMode;
+	private final ModelBinder<Model> mBinder;
+	private final Constructor<T> mConstructor;
+	private CursorProjection mProjection;
+
+	private T mFlyweight;
+	private boolean mMoved;
+	private boolean mHasNext;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public ModelIterator(Class<T> type, Cursor cursor, Mode mode) {
+		mType = type;
+		mCursor = cursor;
+		mMode = mode;
+		mBinder = Cache.getTableInfo(type).getBinder();
+
+		try {
+			mConstructor = mBinder == null ? type.getConstructor() : null;
+		}
+		catch (NoSuchMethodException e) {
+			cursor.close();
+			throw new RuntimeException("Your model " + type.getName() + " does not define a default constructor.");
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public boolean hasNext() {
+		if (!mMoved) {
+			mHasNext = !mCursor.isClosed() && mCursor.moveToNext();
+			mMoved = true;
+
+			if (!mHasNext) {
+				close();
+			}
+		}
+		return mHasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		mMoved = false;
+
+		if (mProjection == null) {
+			mProjection = new CursorProjection(Cache.getTableInfo(mType), mCursor);
+		}
+
+		T entity = null;
+		if (mMode == Mode.CACHED && mProjection.getIdIndex() >= 0) {
+			entity = mType.cast(Cache.getEntity(mType, mCursor.getLong(mProjection.getIdIndex())));
+		}
+		else if (mMode == Mode.FLYWEIGHT) {
+			entity = mFlyweight;
+		}
+
+		if (entity == null) {
+			entity = newInstance();
+			if (mMode == Mode.FLYWEIGHT) {
+				mFlyweight = entity;
+			}
+		}
+
+		entity.loadFromCursor(mCursor, mProjection, mMode == Mode.CACHED);
+		return entity;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		if (!mCursor.isClosed()) {
+			mCursor.close();
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private T newInstance() {
+		if (mBinder != null) {
+			return mType.cast(mBinder.newInstance());
+		}
+
+		try {
+			return mConstructor.newInstance();
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Couldn't instantiate " + mType.getName(), e);
+		}
+	}
+}
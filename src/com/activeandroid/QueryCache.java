@@ -0,0 +1,292 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.activeandroid.sqlbrite.BriteDatabase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of queries by type of result, SQL and arguments, evicted when one of the tables they read is written
+ * through the {@link BriteDatabase}, and least recently used first when full. The tables read by
+ * a query are the model tables named in its SQL, a query which names none isn't cached.
+ * <p>
+ * A result is only stored if no table was written while it was read: take a generation with
+ * {@link #getGeneration()} before running the query and give it to {@link #put}.
+ */
+public final class QueryCache implements BriteDatabase.WriteListener {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/** Returned by {@link #get} when there's no result for the query. */
+	public static final Object MISS = new Object();
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final Object NULL = new Object();
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final int mMaxSize;
+	/** Lower case. */
+	private final Set<String> mTableNames = new HashSet<String>();
+
+	private final LinkedHashMap<Key, Result> mEntries;
+	private final Map<String, Set<Key>> mKeysByTable = new HashMap<String, Set<Key>>();
+	private long mGeneration;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	QueryCache(int maxSize, Collection<TableInfo> tableInfos) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+
+		mMaxSize = maxSize;
+		for (TableInfo tableInfo : tableInfos) {
+			mTableNames.add(tableInfo.getTableName().toLowerCase(Locale.US));
+		}
+
+		mEntries = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+				if (size() > mMaxSize) {
+					unindex(eldest.getKey(), eldest.getValue(), null);
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * @param type of the result, the same query may be read as different types
+	 * @return the result of the query, which may be null, or {@link #MISS}
+	 */
+	public synchronized Object get(Class<?> type, String sql, Object[] args) {
+		final Result result = mEntries.get(new Key(type, sql, args));
+		if (result == null) {
+			return MISS;
+		}
+		return result.mValue == NULL ? null : result.mValue;
+	}
+
+	/**
+	 * Generation of the cache, which changes whenever a table is written.
+	 */
+	public synchronized long getGeneration() {
+		return mGeneration;
+	}
+
+	/**
+	 * Store the result of a query read since {@code generation} was taken, unless a table was
+	 * written since. The result is returned as is by {@link #get}, so it must not be modified.
+	 */
+	public synchronized void put(Class<?> type, String sql, Object[] args, Object value, long generation) {
+		if (generation != mGeneration) {
+			return;
+		}
+
+		final String[] tables = findTables(sql);
+		if (tables.length == 0) {
+			return;
+		}
+
+		final Key key = new Key(type, sql, args);
+		final Result result = new Result(value == null ? NULL : value, tables);
+		final Result previous = mEntries.put(key, result);
+		if (previous != null) {
+			unindex(key, previous, null);
+		}
+		for (String table : tables) {
+			Set<Key> keys = mKeysByTable.get(table);
+			if (keys == null) {
+				keys = new HashSet<Key>();
+				mKeysByTable.put(table, keys);
+			}
+			keys.add(key);
+		}
+	}
+
+	/**
+	 * Evict the results of the queries which read one of {@code tables}.
+	 */
+	public synchronized void invalidate(Collection<String> tables) {
+		mGeneration++;
+
+		for (String table : tables) {
+			final String name = table.toLowerCase(Locale.US);
+			final Set<Key> keys = mKeysByTable.remove(name);
+			if (keys == null) {
+				continue;
+			}
+			for (Key key : keys) {
+				final Result result = mEntries.remove(key);
+				if (result != null) {
+					unindex(key, result, name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evict the results of the queries which read a table named in {@code sql}, for statements
+	 * which aren't run through {@link BriteDatabase#executeAndTrigger}.
+	 */
+	public void invalidate(String sql) {
+		invalidate(Arrays.asList(findTables(sql)));
+	}
+
+	@Override
+	public void onTablesWritten(Set<String> tables) {
+		invalidate(tables);
+	}
+
+	public synchronized void clear() {
+		mGeneration++;
+		mEntries.clear();
+		mKeysByTable.clear();
+	}
+
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Model tables named in {@code sql}, in lower case: its identifiers, quoted or not, outside
+	 * of string literals.
+	 */
+	private String[] findTables(String sql) {
+		final Set<String> tables = new HashSet<String>();
+		final int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (c == '\'') {
+				final int end = sql.indexOf('\'', i + 1);
+				i = end < 0 ? length : end + 1;
+			}
+			else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+				final int start = i;
+				while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+						|| sql.charAt(i) == '$')) {
+					i++;
+				}
+				final String identifier = sql.substring(start, i).toLowerCase(Locale.US);
+				if (mTableNames.contains(identifier)) {
+					tables.add(identifier);
+				}
+			}
+			else if (c == '"' || c == '`' || c == '[') {
+				final int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+				final int stop = end < 0 ? length : end;
+				final String identifier = sql.substring(i + 1, stop).toLowerCase(Locale.US);
+				if (mTableNames.contains(identifier)) {
+					tables.add(identifier);
+				}
+				i = stop + 1;
+			}
+			else {
+				i++;
+			}
+		}
+		return tables.toArray(new String[tables.size()]);
+	}
+
+	/**
+	 * Remove {@code key} from the keys of the tables of {@code result}, except {@code skipped}.
+	 */
+	private void unindex(Key key, Result result, String skipped) {
+		for (String table : result.mTables) {
+			if (table.equals(skipped)) {
+				continue;
+			}
+			final Set<Key> keys = mKeysByTable.get(table);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					mKeysByTable.remove(table);
+				}
+			}
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final class Key {
+		private final Class<?> mType;
+		private final String mSql;
+		private final Object[] mArgs;
+		private final int mHash;
+
+		Key(Class<?> type, String sql, Object[] args) {
+			mType = type;
+			mSql = sql;
+			mArgs = args != null ? args.clone() : new Object[0];
+			mHash = 31 * (31 * (type != null ? type.hashCode() : 0) + sql.hashCode()) + Arrays.deepHashCode(mArgs);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) o;
+			return mHash == other.mHash && mType == other.mType && mSql.equals(other.mSql)
+					&& Arrays.deepEquals(mArgs, other.mArgs);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHash;
+		}
+	}
+
+	private static final class Result {
+		private final Object mValue;
+		private final String[] mTables;
+
+		Result(Object value, String[] tables) {
+			mValue = value;
+			mTables = tables;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Up to {@link #MAX_COUNTERS} counters incremented by many threads, like {@code LongAdder} which
+ * Android doesn't have before API 24: each thread adds to one of several cells, each cell holding
+ * all the counters in its own cache line, and reading a counter sums its cells.
+ */
+final class StripedCounters {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/** Longs in a cache line of 64 bytes. */
+	static final int MAX_COUNTERS = 8;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int CELLS;
+
+	static {
+		int cells = 1;
+		while (cells < Runtime.getRuntime().availableProcessors() * 2) {
+			cells <<= 1;
+		}
+		CELLS = cells;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final AtomicLongArray mCells = new AtomicLongArray(CELLS * MAX_COUNTERS);
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	void add(int counter, long value) {
+		final int cell = (int) Thread.currentThread().getId() & (CELLS - 1);
+		mCells.addAndGet(cell * MAX_COUNTERS + counter, value);
+	}
+
+	long sum(int counter) {
+		long sum = 0;
+		for (int i = 0; i < CELLS; i++) {
+			sum += mCells.get(i * MAX_COUNTERS + counter);
+		}
+		return sum;
+	}
+
+	/**
+	 * Set {@code counter} to 0. Additions made at the same time may be lost.
+	 */
+	void reset(int counter) {
+		for (int i = 0; i < CELLS; i++) {
+			mCells.set(i * MAX_COUNTERS + counter, 0);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Thread safe entity cache split in stripes by hash of table and id, each stripe being a
+ * {@link LruEntityCache} with its own lock, so that threads loading different rows rarely wait
+ * for each other. Each stripe evicts its own least recently used entry, which approximates the
+ * global LRU order. With one stripe the order is exact.
+ */
+final class StripedEntityCache {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final LruEntityCache[] mStripes;
+	private final boolean mWeighed;
+	private final int mShift;
+	private final int mMask;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * @param maxBytes estimated heap used by the cached models, see
+	 *        {@link TableInfo#estimateSize(Model)}. 0 to only bound their number.
+	 * @param expireAfterMillis age after which a model isn't returned anymore, 0 for never
+	 * @param concurrencyLevel rounded up to a power of two, at most one stripe per entry
+	 */
+	StripedEntityCache(int maxSize, long maxBytes, long expireAfterMillis, int concurrencyLevel) {
+		int stripes = 1;
+		while (stripes < concurrencyLevel && stripes < maxSize) {
+			stripes <<= 1;
+		}
+
+		mStripes = new LruEntityCache[stripes];
+		for (int i = 0; i < stripes; i++) {
+			mStripes[i] = new LruEntityCache((maxSize + stripes - 1) / stripes,
+					(maxBytes + stripes - 1) / stripes, expireAfterMillis);
+		}
+		mWeighed = maxBytes > 0;
+
+		// The stripe is chosen with the high bits of the hash, the stripes use the low bits
+		mShift = 32 - Integer.numberOfTrailingZeros(stripes);
+		mMask = stripes - 1;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	Model get(TableInfo table, long id) {
+		final LruEntityCache stripe = stripe(table, id);
+		synchronized (stripe) {
+			return stripe.get(table, id);
+		}
+	}
+
+	/**
+	 * @return the number of evicted entries
+	 */
+	int put(TableInfo table, long id, Model entity) {
+		final int weight = mWeighed ? table.estimateSize(entity) : 1;
+		final LruEntityCache stripe = stripe(table, id);
+		synchronized (stripe) {
+			return stripe.put(table, id, entity, weight);
+		}
+	}
+
+	Model remove(TableInfo table, long id) {
+		final LruEntityCache stripe = stripe(table, id);
+		synchronized (stripe) {
+			return stripe.remove(table, id);
+		}
+	}
+
+	void clear() {
+		for (LruEntityCache stripe : mStripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	/**
+	 * Estimated heap used by the cached models, 0 if they aren't weighed.
+	 */
+	long sizeBytes() {
+		if (!mWeighed) {
+			return 0;
+		}
+
+		long weight = 0;
+		for (LruEntityCache stripe : mStripes) {
+			synchronized (stripe) {
+				weight += stripe.weight();
+			}
+		}
+		return weight;
+	}
+
+	int size() {
+		int size = 0;
+		for (LruEntityCache stripe : mStripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private LruEntityCache stripe(TableInfo table, long id) {
+		// With one stripe the shift is 32, which Java reduces to 0, but the mask is 0
+		return mStripes[(LruEntityCache.hash(table, id) >>> mShift) & mMask];
+	}
+}
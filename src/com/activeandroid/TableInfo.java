@@ -19,11 +19,17 @@ package com.activeandroid;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.activeandroid.annotation.Cacheable;
 import com.activeandroid.annotation.Column;
 import com.activeandroid.annotation.Table;
+import com.activeandroid.query.CompiledQuery;
+import com.activeandroid.query.Select;
+import com.activeandroid.serializer.TypeSerializer;
 import com.activeandroid.util.ReflectionUtils;
+import com.activeandroid.util.SQLiteUtils;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -31,8 +37,36 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class TableInfo {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	// Rough heap sizes for estimateSize(), for a 32 bit VM with 8 byte alignment
+	private static final int REFERENCE_SIZE = 4;
+	private static final int BOXED_SIZE = 16;
+	private static final int DATE_SIZE = 24;
+	/** Object header, the fields declared by Model and the boxed id. */
+	private static final int MODEL_SIZE = 40 + BOXED_SIZE;
+	/** String object and the header of its char array. */
+	private static final int STRING_SIZE = 24 + 16;
+	private static final int ARRAY_SIZE = 16;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PACKAGE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	// Counters of getCacheMetrics()
+	static final int CACHE_HITS = 0;
+	static final int CACHE_MISSES = 1;
+	static final int CACHE_PUTS = 2;
+	static final int CACHE_EVICTIONS = 3;
+	static final int CACHE_SIZE = 4;
+	static final int LOADS = 5;
+	static final int LOAD_NANOS = 6;
+
 	//////////////////////////////////////////////////////////////////////////////////////
 	// PRIVATE MEMBERS
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -40,11 +74,29 @@ public final class TableInfo {
 	private Class<? extends Model> mType;
 	private String mTableName;
 	private String mIdName = Table.DEFAULT_ID_NAME;
+	private boolean mTrackChanges;
+	private Cacheable mCacheable;
+	/** Cache segment of the models, null when they aren't cached. Set by {@link Cache}. */
+	private StripedEntityCache mEntityCache;
+	private final StripedCounters mCounters = new StripedCounters();
+	/** Incremented by {@link Cache} whenever the table is written. */
+	private final AtomicLong mWriteVersion = new AtomicLong();
+	private ModelBinder<Model> mBinder;
+	private volatile ColumnCodec[] mCodecs;
+	private volatile CompiledQuery<Model> mLoadQuery;
 
 	private Map<Field, String> mColumnNames = new LinkedHashMap<Field, String>();
     private Map<String, List<Field>> mUniqueGroups = new LinkedHashMap<String, List<Field>>();
     private List<Field> mUniqueKeys = new ArrayList<Field>();
 
+    private volatile String mUpsertSql;
+    private volatile boolean mUpsertDisabled;
+    private volatile String mUniqueLookupSql;
+    private volatile String[] mUniqueLookupColumns;
+
+	private int mFixedSize;
+	private Field[] mVariableSizeFields;
+
 	//////////////////////////////////////////////////////////////////////////////////////
 	// CONSTRUCTORS
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -57,10 +109,12 @@ public final class TableInfo {
         if (tableAnnotation != null) {
 			mTableName = tableAnnotation.name();
 			mIdName = tableAnnotation.id();
+			mTrackChanges = tableAnnotation.trackChanges();
 		}
 		else {
 			mTableName = type.getSimpleName();
         }
+        mCacheable = type.getAnnotation(Cacheable.class);
 
         // Manually add the id column since it is not declared like the other columns.
         Field idField = getIdField(type);
@@ -117,6 +171,8 @@ public final class TableInfo {
             }
         } // for each field
 
+        mBinder = findBinder(type);
+        computeFixedSize();
     }
 
 	//////////////////////////////////////////////////////////////////////////////////////
@@ -135,6 +191,20 @@ public final class TableInfo {
 		return mIdName;
 	}
 
+	/**
+	 * @see Table#trackChanges()
+	 */
+	public boolean isTrackingChanges() {
+		return mTrackChanges;
+	}
+
+	/**
+	 * Cache policy of the models, null when they use the cache of the configuration.
+	 */
+	public Cacheable getCacheable() {
+		return mCacheable;
+	}
+
 	public Collection<Field> getFields() {
 		return mColumnNames.keySet();
 	}
@@ -143,6 +213,132 @@ public final class TableInfo {
 		return mColumnNames.get(field);
 	}
 
+	/**
+	 * Field of the column {@code columnName}, or null.
+	 */
+	public Field getField(String columnName) {
+		for (Map.Entry<Field, String> entry : mColumnNames.entrySet()) {
+			if (entry.getValue().equals(columnName)) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Codecs of the columns, in the order of {@link #getFields()}. Built once when the table is
+	 * registered, the array must not be modified.
+	 */
+	public ColumnCodec[] getCodecs() {
+		ColumnCodec[] codecs = mCodecs;
+		if (codecs == null) {
+			codecs = createCodecs(null);
+		}
+		return codecs;
+	}
+
+	/**
+	 * Columns written by {@link ModelBinder#bindStatement} when the model has a binder, by
+	 * {@link #getCodecs()} otherwise.
+	 */
+	public String[] getBoundColumnNames() {
+		if (mBinder != null) {
+			return mBinder.getColumnNames();
+		}
+
+		final ColumnCodec[] codecs = getCodecs();
+		final String[] columnNames = new String[codecs.length];
+		for (int i = 0; i < codecs.length; i++) {
+			columnNames[i] = codecs[i].getColumnName();
+		}
+		return columnNames;
+	}
+
+	/**
+	 * Query of the row with the id given as argument.
+	 */
+	public CompiledQuery<Model> getLoadQuery() {
+		CompiledQuery<Model> query = mLoadQuery;
+		if (query == null) {
+			query = mLoadQuery = new Select().from(mType).where(mIdName + "=?").limit(1).compile();
+		}
+		return query;
+	}
+
+	/**
+	 * Estimate of the heap used by {@code entity}: a size computed once from the types of the
+	 * columns, plus the length of its String and byte[] columns. Objects referenced by other
+	 * columns, like models, aren't counted.
+	 */
+	public int estimateSize(Model entity) {
+		long size = mFixedSize;
+		for (Field field : mVariableSizeFields) {
+			final Object value;
+			try {
+				value = field.get(entity);
+			}
+			catch (IllegalAccessException e) {
+				continue;
+			}
+
+			if (value instanceof String) {
+				size += STRING_SIZE + 2L * ((String) value).length();
+			}
+			else if (value instanceof byte[]) {
+				size += ARRAY_SIZE + ((byte[]) value).length;
+			}
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Snapshot of the counters of the entity cache and of the loading of models of the table.
+	 */
+	public CacheMetrics getCacheMetrics() {
+		return new CacheMetrics(mTableName, mCounters.sum(CACHE_HITS), mCounters.sum(CACHE_MISSES),
+				mCounters.sum(CACHE_PUTS), mCounters.sum(CACHE_EVICTIONS), mCounters.sum(CACHE_SIZE),
+				mCounters.sum(LOADS), mCounters.sum(LOAD_NANOS));
+	}
+
+	/**
+	 * Set the counters of {@link #getCacheMetrics()} to 0, except the size of the cache.
+	 */
+	public void resetCacheMetrics() {
+		mCounters.reset(CACHE_HITS);
+		mCounters.reset(CACHE_MISSES);
+		mCounters.reset(CACHE_PUTS);
+		mCounters.reset(CACHE_EVICTIONS);
+		mCounters.reset(LOADS);
+		mCounters.reset(LOAD_NANOS);
+	}
+
+	void count(int counter, long value) {
+		mCounters.add(counter, value);
+	}
+
+	long getWriteVersion() {
+		return mWriteVersion.get();
+	}
+
+	void onWritten() {
+		mWriteVersion.incrementAndGet();
+	}
+
+	StripedEntityCache getEntityCache() {
+		return mEntityCache;
+	}
+
+	void setEntityCache(StripedEntityCache entityCache) {
+		mEntityCache = entityCache;
+	}
+
+	/**
+	 * Generated binder of the model, or null if the model must be bound with reflection.
+	 */
+	public ModelBinder<Model> getBinder() {
+		return mBinder;
+	}
+
     public boolean hasOnUpdateFields() {
         return ! mUniqueGroups.isEmpty() || ! mUniqueKeys.isEmpty();
     }
@@ -155,6 +351,104 @@ public final class TableInfo {
         return mUniqueKeys;
     }
 
+    /**
+     * Statement inserting the bound columns, or updating the row matching the "unique on update"
+     * columns, and returning the id. Null when the database can't run it.
+     *
+     * @see SQLiteUtils#createUpsertSql(TableInfo)
+     */
+    public String getUpsertSql() {
+        if (mUpsertDisabled || !hasOnUpdateFields() || !SQLiteUtils.isUpsertSupported()) {
+            return null;
+        }
+
+        String sql = mUpsertSql;
+        if (sql == null) {
+            sql = mUpsertSql = SQLiteUtils.createUpsertSql(this);
+        }
+        return sql;
+    }
+
+    /**
+     * Stop using {@link #getUpsertSql()}, for schemas without a UNIQUE constraint matching the
+     * conflict targets.
+     */
+    public void disableUpsert() {
+        mUpsertDisabled = true;
+    }
+
+    /**
+     * Query selecting the id of the row matching the "unique on update" columns, with the values
+     * of {@link #getUniqueLookupColumns()} as arguments.
+     *
+     * @see SQLiteUtils#createUniqueLookupSql(TableInfo)
+     */
+    public String getUniqueLookupSql() {
+        String sql = mUniqueLookupSql;
+        if (sql == null) {
+            sql = mUniqueLookupSql = SQLiteUtils.createUniqueLookupSql(this);
+        }
+        return sql;
+    }
+
+    public String[] getUniqueLookupColumns() {
+        String[] columns = mUniqueLookupColumns;
+        if (columns == null) {
+            final List<String> names = new ArrayList<String>();
+            for (Field field : mUniqueKeys) {
+                names.add(getColumnName(field));
+            }
+            for (List<Field> group : mUniqueGroups.values()) {
+                for (Field field : group) {
+                    names.add(getColumnName(field));
+                }
+            }
+            columns = mUniqueLookupColumns = names.toArray(new String[names.size()]);
+        }
+        return columns;
+    }
+
+    private void computeFixedSize() {
+        final List<Field> variableSizeFields = new ArrayList<Field>();
+        int size = MODEL_SIZE;
+        for (Field field : mColumnNames.keySet()) {
+            if (field.getDeclaringClass() == Model.class) {
+                continue;
+            }
+
+            final Class<?> type = field.getType();
+            if (type == long.class || type == double.class) {
+                size += 8;
+            }
+            else if (type == int.class || type == float.class) {
+                size += 4;
+            }
+            else if (type == short.class || type == char.class) {
+                size += 2;
+            }
+            else if (type == byte.class || type == boolean.class) {
+                size += 1;
+            }
+            else if (Number.class.isAssignableFrom(type) || type == Boolean.class
+                    || type == Character.class) {
+                size += REFERENCE_SIZE + BOXED_SIZE;
+            }
+            else if (java.util.Date.class.isAssignableFrom(type)) {
+                size += REFERENCE_SIZE + DATE_SIZE;
+            }
+            else {
+                if (type == String.class || type == byte[].class) {
+                    field.setAccessible(true);
+                    variableSizeFields.add(field);
+                }
+                size += REFERENCE_SIZE;
+            }
+        }
+
+        mFixedSize = (size + 7) & ~7;
+        mVariableSizeFields = variableSizeFields.toArray(new Field[variableSizeFields.size()]);
+    }
+
     private Field getIdField(Class<?> type) {
         if (type.equals(Model.class)) {
             try {
@@ -171,4 +465,49 @@ public final class TableInfo {
         return null;
     }
 
+    /**
+     * Resolve the codecs with the serializers being registered, or with {@link Cache} when null.
+     */
+    ColumnCodec[] createCodecs(Map<Class<?>, TypeSerializer> typeSerializers) {
+        final List<ColumnCodec> codecs = new ArrayList<ColumnCodec>(mColumnNames.size());
+        for (Map.Entry<Field, String> entry : mColumnNames.entrySet()) {
+            final Class<?> fieldType = entry.getKey().getType();
+            final TypeSerializer typeSerializer = typeSerializers != null
+                    ? typeSerializers.get(fieldType) : Cache.getParserForType(fieldType);
+            final ColumnCodec codec = ColumnCodec.create(entry.getKey(), entry.getValue(), fieldType,
+                    typeSerializer);
+            if (codec != null) {
+                codecs.add(codec);
+            }
+        }
+
+        mCodecs = codecs.toArray(new ColumnCodec[codecs.size()]);
+        return mCodecs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ModelBinder<Model> findBinder(Class<? extends Model> type) {
+        try {
+            Class<?> binderClass = Class.forName(type.getName() + ModelBinder.BINDER_SUFFIX,
+                    true, type.getClassLoader());
+            return (ModelBinder<Model>) binderClass.getDeclaredConstructor().newInstance();
+        }
+        catch (ClassNotFoundException e) {
+            return null; // Model is bound with reflection
+        }
+        catch (NoSuchMethodException e) {
+            Log.e("ModelBinder has no default constructor.", e.toString());
+        }
+        catch (InstantiationException e) {
+            Log.e("Couldn't instantiate ModelBinder.", e.toString());
+        }
+        catch (IllegalAccessException e) {
+            Log.e("IllegalAccessException", e.toString());
+        }
+        catch (InvocationTargetException e) {
+            Log.e("Couldn't instantiate ModelBinder.", e.getCause().toString());
+        }
+        return null;
+    }
+
 }
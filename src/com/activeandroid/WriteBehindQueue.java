@@ -0,0 +1,256 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.activeandroid.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Models saved later by {@link Model#saveLater()}. Saves of the same row are coalesced until it
+ * is written, and the queued models are written by a background thread with
+ * {@link Model#saveAll}, one transaction per batch, once the window after the first queued save
+ * has passed or as soon as a batch is full. When a batch fails, its models are saved one by one,
+ * so that a model which can't be saved only fails its own future.
+ * <p>
+ * The state of a model is read when it is written, not when it is queued.
+ */
+final class WriteBehindQueue {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final int mBatchSize;
+	private final long mWindowMillis;
+
+	// Guarded by this
+	private final Map<RowKey, Pending> mPending = new LinkedHashMap<RowKey, Pending>();
+	private ScheduledExecutorService mExecutor;
+	private boolean mFlushScheduled;
+	private boolean mShutdown;
+
+	private final Runnable mFlushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushPending();
+		}
+	};
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	WriteBehindQueue(int batchSize, long windowMillis) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize <= 0");
+		}
+
+		mBatchSize = batchSize;
+		mWindowMillis = windowMillis;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * @return the id of the model once written, the same future for saves coalesced together
+	 */
+	synchronized Future<Long> save(Model model) {
+		if (mShutdown) {
+			throw new IllegalStateException("ActiveAndroid was disposed");
+		}
+
+		final RowKey key = new RowKey(model);
+		Pending pending = mPending.get(key);
+		if (pending != null) {
+			// Another instance of the same row: its state is the latest
+			pending.mModel = model;
+			return pending.mFuture;
+		}
+
+		pending = new Pending(model);
+		mPending.put(key, pending);
+
+		if (mPending.size() == mBatchSize) {
+			executor().execute(mFlushTask);
+		}
+		else if (!mFlushScheduled) {
+			mFlushScheduled = true;
+			executor().schedule(mFlushTask, mWindowMillis, TimeUnit.MILLISECONDS);
+		}
+		return pending.mFuture;
+	}
+
+	/**
+	 * Drop the queued save of the row of {@code model}, whose future is cancelled.
+	 */
+	synchronized void remove(Model model) {
+		final Pending pending = mPending.remove(new RowKey(model));
+		if (pending != null) {
+			pending.mFuture.cancel(false);
+		}
+	}
+
+	/**
+	 * Wait until the saves queued before the call are written.
+	 */
+	void flush() {
+		final Future<?> done;
+		synchronized (this) {
+			if (mExecutor == null) {
+				return;
+			}
+			done = mExecutor.submit(mFlushTask);
+		}
+
+		try {
+			done.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			Log.e("Failed to flush saves", e.getCause());
+		}
+	}
+
+	/**
+	 * Write the queued saves and stop the background thread.
+	 */
+	void shutdown() {
+		synchronized (this) {
+			mShutdown = true;
+		}
+		flush();
+		synchronized (this) {
+			if (mExecutor != null) {
+				mExecutor.shutdown();
+				mExecutor = null;
+			}
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private ScheduledExecutorService executor() {
+		if (mExecutor == null) {
+			mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					final Thread thread = new Thread(runnable, "ActiveAndroid-WriteBehind");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return mExecutor;
+	}
+
+	private void flushPending() {
+		final List<Pending> pending;
+		synchronized (this) {
+			pending = new ArrayList<Pending>(mPending.values());
+			mPending.clear();
+			mFlushScheduled = false;
+		}
+
+		for (int start = 0; start < pending.size(); start += mBatchSize) {
+			final List<Pending> batch = pending.subList(start, Math.min(start + mBatchSize, pending.size()));
+			final List<Model> models = new ArrayList<Model>(batch.size());
+			for (Pending save : batch) {
+				models.add(save.mModel);
+			}
+
+			try {
+				Model.saveAll(models);
+			}
+			catch (RuntimeException e) {
+				// Rolled back, with the ids the models had
+				Log.e("Failed to save " + models.size() + " models, saving them one by one", e);
+				for (Pending save : batch) {
+					try {
+						save.mFuture.set(save.mModel.save());
+					}
+					catch (RuntimeException saveException) {
+						Log.e("Failed to save " + save.mModel, saveException);
+						save.mFuture.setException(saveException);
+					}
+				}
+				continue;
+			}
+
+			for (Pending save : batch) {
+				save.mFuture.set(save.mModel.getId());
+			}
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Table and id of a model, or the model itself while it has no id. Unlike
+	 * {@link Model#hashCode()}, it doesn't change when the model is given an id.
+	 */
+	private static final class RowKey {
+		private final TableInfo mTableInfo;
+		private final Long mId;
+		private final Model mModel;
+
+		RowKey(Model model) {
+			mTableInfo = Cache.getTableInfo(model.getClass());
+			mId = model.getId();
+			mModel = mId == null ? model : null;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RowKey)) {
+				return false;
+			}
+			final RowKey other = (RowKey) o;
+			return mId != null ? mTableInfo == other.mTableInfo && mId.equals(other.mId) : mModel == other.mModel;
+		}
+
+		@Override
+		public int hashCode() {
+			return mId != null ? 31 * mTableInfo.hashCode() + mId.hashCode() : System.identityHashCode(mModel);
+		}
+	}
+
+	private static final class Pending {
+		private final WriteFuture<Long> mFuture = new WriteFuture<Long>();
+		private Model mModel;
+
+		Pending(Model model) {
+			mModel = model;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of a write run later by a writer thread, completed once by {@link #set},
+ * {@link #setException} or {@link #cancel}.
+ */
+final class WriteFuture<V> implements Future<V> {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final CountDownLatch mDone = new CountDownLatch(1);
+	private V mValue;
+	private Throwable mException;
+	private boolean mCancelled;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Cancel the write if it hasn't run yet. The writer doesn't check whether it was cancelled,
+	 * the owner of the write removes it before it runs.
+	 */
+	@Override
+	public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+		if (mDone.getCount() == 0) {
+			return false;
+		}
+		mCancelled = true;
+		mDone.countDown();
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return mCancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return mDone.getCount() == 0;
+	}
+
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		mDone.await();
+		return getValue();
+	}
+
+	@Override
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+			TimeoutException {
+		if (!mDone.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+		return getValue();
+	}
+
+	synchronized void set(V value) {
+		if (mDone.getCount() != 0) {
+			mValue = value;
+			mDone.countDown();
+		}
+	}
+
+	synchronized void setException(Throwable exception) {
+		if (mDone.getCount() != 0) {
+			mException = exception;
+			mDone.countDown();
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private synchronized V getValue() throws ExecutionException {
+		if (mCancelled) {
+			throw new CancellationException();
+		}
+		if (mException != null) {
+			throw new ExecutionException(mException);
+		}
+		return mValue;
+	}
+}
@@ -0,0 +1,115 @@
+package com.activeandroid;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Ids and snapshots of the models saved or deleted by a thread while the journal is open, as they
+ * were before their first write, to put them back when the writes are rolled back. Otherwise a
+ * model keeps the id of a row which no longer exists, and a model tracking changes the snapshot
+ * of a save which didn't happen, so that saving it again writes nothing.
+ * <p>
+ * Journals of a thread nest, a write is recorded by every open journal.
+ */
+final class WriteJournal {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final ThreadLocal<WriteJournal> sCurrent = new ThreadLocal<WriteJournal>();
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final WriteJournal mParent;
+	// By instance, the hash code of a model changes with its id
+	private final Map<Model, State> mStates = new IdentityHashMap<Model, State>();
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private WriteJournal(WriteJournal parent) {
+		mParent = parent;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Start recording the writes of the current thread, until {@link #close()}.
+	 */
+	static WriteJournal open() {
+		final WriteJournal journal = new WriteJournal(sCurrent.get());
+		sCurrent.set(journal);
+		return journal;
+	}
+
+	/**
+	 * Record the state of {@code model} before the current thread writes it.
+	 */
+	static void record(Model model) {
+		// A model recorded by a journal is recorded by its parents too
+		for (WriteJournal journal = sCurrent.get(); journal != null && !journal.mStates.containsKey(model);
+				journal = journal.mParent) {
+			journal.mStates.put(model, new State(model.getId(), model.getSnapshot()));
+		}
+	}
+
+	/**
+	 * Stop recording. Journals must be closed in the reverse order they were opened.
+	 */
+	void close() {
+		sCurrent.set(mParent);
+	}
+
+	/**
+	 * Put back the recorded models as they were before their first write, and remove them from
+	 * the entity cache, whose instance may hold values which were rolled back.
+	 */
+	void rollback() {
+		for (Map.Entry<Model, State> entry : mStates.entrySet()) {
+			final Model model = entry.getKey();
+			final State state = entry.getValue();
+			// Under the id it was written with and the one it's given back
+			Cache.removeEntity(model);
+			model.restore(state.mId, state.mSnapshot);
+			Cache.removeEntity(model);
+		}
+		mStates.clear();
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final class State {
+		private final Long mId;
+		private final ContentValues mSnapshot;
+
+		State(Long id, ContentValues snapshot) {
+			mId = id;
+			mSnapshot = snapshot;
+		}
+	}
+}
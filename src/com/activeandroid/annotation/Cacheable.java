@@ -0,0 +1,47 @@
+package com.activeandroid.annotation;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Identity cache policy of a model. Models without it share one cache sized by the
+ * configuration; models with it are kept in a separate segment, shared by the models with the
+ * same policy, so that the models of a busy table don't evict those of other tables.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+	/**
+	 * False to never keep the models in the cache: queries always return new instances.
+	 */
+	public boolean value() default true;
+
+	/**
+	 * Number of models kept in the segment, 0 for the cache size of the configuration.
+	 */
+	public int size() default 0;
+
+	/**
+	 * Time after which a cached model is loaded again instead of being returned from the cache,
+	 * 0 to keep it until it's evicted.
+	 */
+	public long expireAfterMillis() default 0;
+}
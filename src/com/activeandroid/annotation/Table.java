@@ -28,4 +28,10 @@ public @interface Table {
 	public static final String DEFAULT_ID_NAME = "Id";
 	public String name();
 	public String id() default DEFAULT_ID_NAME;
+
+	/**
+	 * Remember the column values of loaded and saved models, so that save() only updates the
+	 * columns that changed, and does nothing when none did.
+	 */
+	public boolean trackChanges() default false;
 }
@@ -0,0 +1,298 @@
+package com.activeandroid.query;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.Cursor;
+
+/**
+ * Rows of a query stored by column, one array per column, read by {@link From#executeColumnar()}
+ * without creating models:
+ *
+ * <pre>{@code
+ * ColumnarResult result = new Select("Time", "Value").from(Sample.class).executeColumnar();
+ * long[] times = result.getLongs(0);
+ * double[] values = result.getDoubles(1);
+ * }</pre>
+ *
+ * The type of a column is the type of its values: {@link Cursor#FIELD_TYPE_INTEGER} columns are
+ * stored as {@code long[]}, {@link Cursor#FIELD_TYPE_FLOAT} as {@code double[]},
+ * {@link Cursor#FIELD_TYPE_STRING} as {@code String[]} and {@link Cursor#FIELD_TYPE_BLOB} as
+ * {@code byte[][]}. A column with integer and real values is stored as real, a column with text
+ * and numbers as text. NULL values are kept in a bitmap per column, see {@link #isNull}.
+ */
+public final class ColumnarResult {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final String[] mColumnNames;
+	private final Column[] mColumns;
+	private final int mRowCount;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Read all rows of {@code cursor}, which isn't closed.
+	 */
+	ColumnarResult(Cursor cursor) {
+		mColumnNames = cursor.getColumnNames();
+		mRowCount = cursor.getCount();
+		mColumns = new Column[mColumnNames.length];
+		for (int i = 0; i < mColumns.length; i++) {
+			mColumns[i] = new Column(mRowCount);
+		}
+
+		for (int row = 0; cursor.moveToNext(); row++) {
+			for (int i = 0; i < mColumns.length; i++) {
+				mColumns[i].read(cursor, i, row);
+			}
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public int getRowCount() {
+		return mRowCount;
+	}
+
+	public int getColumnCount() {
+		return mColumns.length;
+	}
+
+	public String getColumnName(int column) {
+		return mColumnNames[column];
+	}
+
+	/**
+	 * @return -1 if there's no column named {@code name}
+	 */
+	public int getColumnIndex(String name) {
+		for (int i = 0; i < mColumnNames.length; i++) {
+			if (mColumnNames[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * One of the {@code Cursor.FIELD_TYPE_*} constants, {@link Cursor#FIELD_TYPE_NULL} if all the
+	 * values of the column are NULL.
+	 */
+	public int getType(int column) {
+		return mColumns[column].mType;
+	}
+
+	public boolean isNull(int column, int row) {
+		final long[] nulls = mColumns[column].mNulls;
+		return nulls != null && (nulls[row >> 6] & (1L << row)) != 0;
+	}
+
+	/**
+	 * Values of an integer column, 0 for NULL values. The array is not copied.
+	 *
+	 * @throws IllegalStateException if the column has real, text or blob values
+	 */
+	public long[] getLongs(int column) {
+		final Column values = mColumns[column];
+		if (values.mType == Cursor.FIELD_TYPE_NULL) {
+			return new long[mRowCount];
+		}
+		values.checkType(Cursor.FIELD_TYPE_INTEGER);
+		return values.mLongs;
+	}
+
+	/**
+	 * Values of a real or integer column, 0 for NULL values. The array of a real column is not
+	 * copied.
+	 *
+	 * @throws IllegalStateException if the column has text or blob values
+	 */
+	public double[] getDoubles(int column) {
+		final Column values = mColumns[column];
+		if (values.mType == Cursor.FIELD_TYPE_NULL) {
+			return new double[mRowCount];
+		}
+		if (values.mType == Cursor.FIELD_TYPE_INTEGER) {
+			final double[] doubles = new double[mRowCount];
+			for (int i = 0; i < mRowCount; i++) {
+				doubles[i] = values.mLongs[i];
+			}
+			return doubles;
+		}
+		values.checkType(Cursor.FIELD_TYPE_FLOAT);
+		return values.mDoubles;
+	}
+
+	/**
+	 * Values of a column as text, null for NULL values. The array of a text column is not copied.
+	 *
+	 * @throws IllegalStateException if the column has blob values
+	 */
+	public String[] getStrings(int column) {
+		final Column values = mColumns[column];
+		switch (values.mType) {
+		case Cursor.FIELD_TYPE_NULL:
+			return new String[mRowCount];
+		case Cursor.FIELD_TYPE_STRING:
+			return values.mStrings;
+		case Cursor.FIELD_TYPE_BLOB:
+			throw new IllegalStateException("Column " + mColumnNames[column] + " has blob values");
+		default:
+			final String[] strings = new String[mRowCount];
+			for (int i = 0; i < mRowCount; i++) {
+				strings[i] = isNull(column, i) ? null : values.toString(i);
+			}
+			return strings;
+		}
+	}
+
+	/**
+	 * Values of a blob column, null for NULL values. The array is not copied.
+	 *
+	 * @throws IllegalStateException if the column has values of another type
+	 */
+	public byte[][] getBlobs(int column) {
+		final Column values = mColumns[column];
+		if (values.mType == Cursor.FIELD_TYPE_NULL) {
+			return new byte[mRowCount][];
+		}
+		values.checkType(Cursor.FIELD_TYPE_BLOB);
+		return values.mBlobs;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CLASSES
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Values of one column, in the array of its type, which is allocated for the first value that
+	 * isn't NULL.
+	 */
+	private static final class Column {
+		private final int mSize;
+		private int mType = Cursor.FIELD_TYPE_NULL;
+		private long[] mLongs;
+		private double[] mDoubles;
+		private String[] mStrings;
+		private byte[][] mBlobs;
+		private long[] mNulls;
+
+		Column(int size) {
+			mSize = size;
+		}
+
+		void read(Cursor cursor, int index, int row) {
+			final int type = cursor.getType(index);
+			if (type == Cursor.FIELD_TYPE_NULL) {
+				if (mNulls == null) {
+					mNulls = new long[(mSize + 63) >> 6];
+				}
+				mNulls[row >> 6] |= 1L << row;
+				return;
+			}
+
+			if (type != mType) {
+				widen(type, row);
+			}
+
+			switch (mType) {
+			case Cursor.FIELD_TYPE_INTEGER:
+				mLongs[row] = cursor.getLong(index);
+				break;
+			case Cursor.FIELD_TYPE_FLOAT:
+				mDoubles[row] = cursor.getDouble(index);
+				break;
+			case Cursor.FIELD_TYPE_STRING:
+				mStrings[row] = cursor.getString(index);
+				break;
+			default:
+				mBlobs[row] = cursor.getBlob(index);
+				break;
+			}
+		}
+
+		void checkType(int type) {
+			if (mType != type) {
+				throw new IllegalStateException("Column has values of type " + mType + ", not " + type);
+			}
+		}
+
+		String toString(int row) {
+			return mType == Cursor.FIELD_TYPE_INTEGER ? Long.toString(mLongs[row]) : Double.toString(mDoubles[row]);
+		}
+
+		/**
+		 * Move the values of the first {@code rows} rows to the array of the type which can hold
+		 * them and values of {@code type}.
+		 */
+		private void widen(int type, int rows) {
+			if (mType == Cursor.FIELD_TYPE_NULL) {
+				mType = type;
+				allocate();
+			}
+			else if (mType == Cursor.FIELD_TYPE_INTEGER && type == Cursor.FIELD_TYPE_FLOAT) {
+				mType = type;
+				allocate();
+				for (int i = 0; i < rows; i++) {
+					mDoubles[i] = mLongs[i];
+				}
+				mLongs = null;
+			}
+			else if (type == Cursor.FIELD_TYPE_BLOB || mType == Cursor.FIELD_TYPE_BLOB) {
+				throw new IllegalStateException("Column has both blob values and values of type " +
+						(type == Cursor.FIELD_TYPE_BLOB ? mType : type));
+			}
+			else if (mType != Cursor.FIELD_TYPE_STRING && type != Cursor.FIELD_TYPE_INTEGER
+					&& type != Cursor.FIELD_TYPE_FLOAT) {
+				final String[] strings = new String[mSize];
+				for (int i = 0; i < rows; i++) {
+					if (mNulls == null || (mNulls[i >> 6] & (1L << i)) == 0) {
+						strings[i] = toString(i);
+					}
+				}
+				mType = Cursor.FIELD_TYPE_STRING;
+				mStrings = strings;
+				mLongs = null;
+				mDoubles = null;
+			}
+			// Otherwise the value is read as the type of the column: integers in a real column, or
+			// numbers in a text column.
+		}
+
+		private void allocate() {
+			switch (mType) {
+			case Cursor.FIELD_TYPE_INTEGER:
+				mLongs = new long[mSize];
+				break;
+			case Cursor.FIELD_TYPE_FLOAT:
+				mDoubles = new double[mSize];
+				break;
+			case Cursor.FIELD_TYPE_STRING:
+				mStrings = new String[mSize];
+				break;
+			default:
+				mBlobs = new byte[mSize][];
+				break;
+			}
+		}
+	}
+}
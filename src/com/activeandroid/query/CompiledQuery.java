@@ -0,0 +1,196 @@
+package com.activeandroid.query;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.activeandroid.Cache;
+import com.activeandroid.Model;
+import com.activeandroid.util.BinderUtils;
+import com.activeandroid.util.SQLiteUtils;
+
+import java.util.List;
+
+/**
+ * Select query built once by {@link From#compile()} and executed many times with different
+ * arguments, without building its SQL again:
+ *
+ * <pre>{@code
+ * private static final CompiledQuery<Item> BY_NAME =
+ *         new Select().from(Item.class).where("Name = ?").compile();
+ *
+ * List<Item> items = BY_NAME.bind(name).execute();
+ * }</pre>
+ *
+ * Instances are immutable and can be shared between threads. {@link #count()} and
+ * {@link #exists()} run on statements compiled once per database; SQLite reuses the statement of
+ * {@link #execute()} through the statement cache of the connection, since its SQL doesn't change.
+ */
+public final class CompiledQuery<T extends Model> {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private final Class<T> mType;
+	private final String mSql;
+	private final String mCountSql;
+	private final String mExistsSql;
+	private final Object[] mArguments;
+	private final int mParameterCount;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	CompiledQuery(Class<T> type, String sql, String countSql, String existsSql, Object[] arguments) {
+		this(type, sql, countSql, existsSql, arguments, countParameters(sql));
+	}
+
+	private CompiledQuery(Class<T> type, String sql, String countSql, String existsSql, Object[] arguments,
+			int parameterCount) {
+		mType = type;
+		mSql = sql;
+		mCountSql = countSql;
+		mExistsSql = existsSql;
+		mArguments = arguments;
+		mParameterCount = parameterCount;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public String getSql() {
+		return mSql;
+	}
+
+	/**
+	 * The same query with {@code args} as the values of all of its parameters, replacing the
+	 * arguments it was compiled with.
+	 *
+	 * @throws IllegalArgumentException if there isn't one argument per parameter
+	 */
+	public CompiledQuery<T> bind(Object... args) {
+		if (args.length != mParameterCount) {
+			throw new IllegalArgumentException("The query has " + mParameterCount + " parameters, "
+					+ args.length + " arguments were given");
+		}
+
+		final Object[] arguments = new Object[args.length];
+		for (int i = 0; i < args.length; i++) {
+			Object arg = args[i];
+			if (arg instanceof Boolean) {
+				arg = (arg.equals(true) ? 1 : 0);
+			}
+			arguments[i] = arg;
+		}
+
+		return new CompiledQuery<T>(mType, mSql, mCountSql, mExistsSql, arguments, mParameterCount);
+	}
+
+	public List<T> execute() {
+		return SQLiteUtils.rawQuery(mType, mSql, mArguments);
+	}
+
+	public T executeSingle() {
+		return SQLiteUtils.rawQuerySingle(mType, mSql, mArguments);
+	}
+
+	/**
+	 * Gets the number of rows returned by the query.
+	 */
+	public int count() {
+		return (int) queryForLong(mCountSql);
+	}
+
+	/**
+	 * Gets a value indicating whether the query returns any rows.
+	 */
+	public boolean exists() {
+		return queryForLong(mExistsSql) != 0;
+	}
+
+	public String[] getArguments() {
+		final String[] args = new String[mArguments.length];
+
+		for (int i = 0; i < mArguments.length; i++) {
+			args[i] = mArguments[i] != null ? mArguments[i].toString() : null;
+		}
+
+		return args;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Number of the "?" and "?NNN" parameters of {@code sql}, outside of literals, quoted
+	 * identifiers and comments, as SQLite numbers them.
+	 */
+	private static int countParameters(String sql) {
+		final int length = sql.length();
+		int count = 0;
+		int i = 0;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (c == '\'' || c == '"' || c == '`' || c == '[') {
+				final int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+				i = end < 0 ? length : end + 1;
+			}
+			else if (sql.startsWith("--", i)) {
+				final int end = sql.indexOf('\n', i);
+				i = end < 0 ? length : end + 1;
+			}
+			else if (sql.startsWith("/*", i)) {
+				final int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+			}
+			else if (c == '?') {
+				int end = i + 1;
+				while (end < length && Character.isDigit(sql.charAt(end))) {
+					end++;
+				}
+				count = end > i + 1 ? Math.max(count, Integer.parseInt(sql.substring(i + 1, end))) : count + 1;
+				i = end;
+			}
+			else {
+				i++;
+			}
+		}
+		return count;
+	}
+
+	private long queryForLong(String sql) {
+		final SQLiteStatement statement = Cache.openDatabase().getCachedStatement(sql);
+		synchronized (statement) {
+			try {
+				for (int i = 0; i < mArguments.length; i++) {
+					BinderUtils.bindValue(statement, i + 1, mArguments[i]);
+				}
+				return statement.simpleQueryForLong();
+			}
+			catch (SQLiteDoneException e) {
+				return 0;
+			}
+			finally {
+				statement.clearBindings();
+			}
+		}
+	}
+}
@@ -16,20 +16,24 @@ package com.activeandroid.query;
  * limitations under the License.
  */
 
+import android.database.Cursor;
 import android.database.SQLException;
 import android.text.TextUtils;
 
 import com.activeandroid.Cache;
 import com.activeandroid.Model;
+import com.activeandroid.ModelIterator;
 import com.activeandroid.content.ContentProvider;
 import com.activeandroid.query.Join.JoinType;
 import com.activeandroid.util.Log;
 import com.activeandroid.util.SQLiteUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import rx.Observable;
+import rx.functions.Action1;
 
 public final class From implements Sqlable {
 	private Sqlable mQueryBase;
@@ -47,6 +51,7 @@ public final class From implements Sqlable {
 	private boolean mGroupStart = false;
 
 	private List<Object> mArguments;
+	private List<Include> mIncludes;
 
 	public From(Class<? extends Model> table, Sqlable queryBase) {
 		mType = table;
@@ -55,6 +60,7 @@ public final class From implements Sqlable {
 
 		mJoins = new ArrayList<Join>();
 		mArguments = new ArrayList<Object>();
+		mIncludes = new ArrayList<Include>();
 	}
 
 	// -- Alias
@@ -261,6 +267,66 @@ public final class From implements Sqlable {
 		return this;
 	}
 
+	// -- Include
+
+	/**
+	 * Load the {@code type} children of the results with one more query, served by
+	 * {@code getMany(type, foreignKey)} afterwards.
+	 *
+	 * @see Model#includeMany(List, Class, String)
+	 */
+	public From include(Class<? extends Model> type, String foreignKey) {
+		mIncludes.add(new Include(type, foreignKey, null, null, null));
+		return this;
+	}
+
+	/**
+	 * @see Model#includeMany2Many(List, Class, Class)
+	 */
+	public From includeMany2Many(Class<? extends Model> target, Class<? extends Model> link) {
+		mIncludes.add(new Include(target, null, link, null, null));
+		return this;
+	}
+
+	/**
+	 * @see Model#includeMany2Many(List, Class, Class, String, String)
+	 */
+	public From includeMany2Many(Class<? extends Model> target, Class<? extends Model> link,
+			String link2local, String link2target) {
+		mIncludes.add(new Include(target, null, link, link2local, link2target));
+		return this;
+	}
+
+	// -- Keyset pagination
+
+	/**
+	 * Continue after the row whose values for the terms of {@link #orderBy(String)} are
+	 * {@code lastRowValues}, instead of skipping rows with {@link #offset(int)}. Must be called
+	 * after orderBy(), whose terms must not be null and should end with a unique column, and
+	 * after the other conditions, which are put in parentheses and combined with the seek
+	 * condition by AND. Terms with NULLS FIRST or NULLS LAST aren't supported.
+	 *
+	 * <pre>{@code
+	 * new Select().from(Item.class).orderBy("Date DESC, Id DESC").seekAfter(last.date, last.getId()).limit(50)
+	 * }</pre>
+	 */
+	public From seekAfter(Object... lastRowValues) {
+		if (mOrderBy == null) {
+			throw new IllegalStateException("seekAfter() needs orderBy() first");
+		}
+		if (mGroups > 0) {
+			throw new IllegalStateException("seekAfter() can't be called in a group");
+		}
+
+		final List<Object> arguments = new ArrayList<Object>(lastRowValues.length * 3);
+		final String clause = SQLiteUtils.createSeekClause(mOrderBy, lastRowValues, arguments);
+		if (mWhere.length() > 0) {
+			// "a OR b" must not become "a OR b AND seek"
+			mWhere.insert(0, "(").append(")");
+		}
+		return where("(" + clause + ")", arguments.toArray());
+	}
+
 	// -- Limit / Offset
 
 	public From limit(int limit) {
@@ -292,6 +358,12 @@ public final class From implements Sqlable {
 		}
 	}
 
+	private void loadIncludes(List<? extends Model> entities) {
+		for (Include include : mIncludes) {
+			include.load(entities);
+		}
+	}
+
 	private From placeholder(int length)
 	{
 		mWhere.append("(");
@@ -378,7 +450,7 @@ public final class From implements Sqlable {
 		// Don't waste time building the string
 		// unless we're going to log it.
 		if (Log.isEnabled()) {
-			Log.v(sqlString + " " + TextUtils.join(",", getArguments()));
+			Log.v(sqlString + " " + TextUtils.join(",", mArguments));
 		}
 
 		return sqlString;
@@ -408,6 +480,29 @@ public final class From implements Sqlable {
 		return sqlString(sql);
 	}
 
+	/**
+	 * The SQL of the query selecting {@code columns} instead of the columns of its select.
+	 */
+	public String toColumnsSql(String columns) {
+		if (!(mQueryBase instanceof Select)) {
+			throw new IllegalArgumentException("Query must be instance of Select");
+		}
+
+		final StringBuilder sql = new StringBuilder();
+		sql.append(((Select) mQueryBase).toSql(columns));
+
+		addFrom(sql);
+		addJoins(sql);
+		addWhere(sql);
+		addGroupBy(sql);
+		addHaving(sql);
+		addOrderBy(sql);
+		addLimit(sql);
+		addOffset(sql);
+
+		return sqlString(sql);
+	}
+
 	public String toExistsSql() {
 
 		final StringBuilder sql = new StringBuilder();
@@ -442,12 +537,40 @@ public final class From implements Sqlable {
 		return sqlString(sql);
 	}
 
+	/**
+	 * The SQL of {@code function} applied to {@code column} in the rows of the query. The query
+	 * is a subquery, so that grouping, distinct, limit and offset apply to the rows before they're
+	 * aggregated; SQLite flattens it when they aren't used.
+	 */
+	public String toAggregateSql(String function, String column) {
+		return "SELECT " + function + "(value) FROM (" + toColumnsSql(column + " AS value") + ")";
+	}
+
+	/**
+	 * Build the SQL of the query once, for executions with different arguments.
+	 *
+	 * @see CompiledQuery#bind(Object...)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Model> CompiledQuery<T> compile() {
+		if (mQueryBase instanceof Select) {
+			return new CompiledQuery<T>((Class<T>) mType, toSql(), toCountSql(), toExistsSql(),
+					mArguments.toArray());
+
+		} else {
+			throw new IllegalArgumentException("Query must be instance of Select");
+
+		}
+	}
+
 	public <T extends Model> List<T> execute() {
 		if (mQueryBase instanceof Select) {
-			return SQLiteUtils.rawQuery(mType, toSql(), getArguments());
+			final List<T> entities = SQLiteUtils.rawQuery(mType, toSql(), getBindArgs());
+			loadIncludes(entities);
+			return entities;
 			
 		} else {
-			SQLiteUtils.execSql(toSql(), getArguments());
+			Cache.openDatabase().executeAndTrigger(Cache.getTableName(mType), toSql(), getBindArgs());
 			Cache.getContext().getContentResolver().notifyChange(ContentProvider.createUri(mType, null), null);
 			return null;
 			
@@ -456,7 +579,27 @@ public final class From implements Sqlable {
 
 	public <T extends Model> Observable<T> executeRx() {
 		if (mQueryBase instanceof Select) {
-			return SQLiteUtils.rawRxQuery(mType, toSql(), getArguments());
+			return SQLiteUtils.rawRxQuery(mType, toSql(), getBindArgs());
+
+		} else {
+			throw new IllegalArgumentException("Query must be instance of Select");
+
+		}
+	}
+
+	/**
+	 * Iterate over the results without loading them all, with models going through the cache
+	 * like with {@link #execute()}. The iterator must be closed if not read to the end.
+	 */
+	public <T extends Model> ModelIterator<T> iterate() {
+		return iterate(ModelIterator.Mode.CACHED);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Model> ModelIterator<T> iterate(ModelIterator.Mode mode) {
+		if (mQueryBase instanceof Select) {
+			final Cursor cursor = Cache.openDatabase().query(toSql(), getBindArgs());
+			return new ModelIterator<T>((Class<T>) mType, cursor, mode);
 
 		} else {
 			throw new IllegalArgumentException("Query must be instance of Select");
@@ -464,32 +607,225 @@ public final class From implements Sqlable {
 		}
 	}
 
+	/**
+	 * Call {@code action} with each result, read one at a time.
+	 */
+	public <T extends Model> void forEach(Action1<T> action) {
+		forEach(ModelIterator.Mode.CACHED, action);
+	}
+
+	public <T extends Model> void forEach(ModelIterator.Mode mode, Action1<T> action) {
+		final ModelIterator<T> iterator = iterate(mode);
+		try {
+			while (iterator.hasNext()) {
+				action.call(iterator.next());
+			}
+		}
+		finally {
+			iterator.close();
+		}
+	}
+
 	public <T extends Model> T executeSingle() {
 		if (mQueryBase instanceof Select) {
 			limit(1);
-			return (T) SQLiteUtils.rawQuerySingle(mType, toSql(), getArguments());
+			final T entity = (T) SQLiteUtils.rawQuerySingle(mType, toSql(), getBindArgs());
+			if (entity != null) {
+				loadIncludes(Collections.singletonList(entity));
+			}
+			return entity;
 			
 		} else {
 			limit(1);
-			SQLiteUtils.rawQuerySingle(mType, toSql(), getArguments()).delete();
+			SQLiteUtils.rawQuerySingle(mType, toSql(), getBindArgs()).delete();
 			return null;
 			
 		}
 	}
 	
+	/**
+	 * Values of {@code column} in the rows of the query, read from the cursor without creating
+	 * models. NULL values are read as 0. The cursor counts its rows before the first one is read,
+	 * so the array is allocated once with its final size.
+	 */
+	public long[] executeLongs(String column) {
+		final Cursor cursor = queryColumn(column);
+		try {
+			final long[] values = new long[cursor.getCount()];
+			for (int i = 0; cursor.moveToNext(); i++) {
+				values[i] = cursor.getLong(0);
+			}
+			return values;
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * @see #executeLongs(String)
+	 */
+	public int[] executeInts(String column) {
+		final Cursor cursor = queryColumn(column);
+		try {
+			final int[] values = new int[cursor.getCount()];
+			for (int i = 0; cursor.moveToNext(); i++) {
+				values[i] = cursor.getInt(0);
+			}
+			return values;
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * @see #executeLongs(String)
+	 */
+	public double[] executeDoubles(String column) {
+		final Cursor cursor = queryColumn(column);
+		try {
+			final double[] values = new double[cursor.getCount()];
+			for (int i = 0; cursor.moveToNext(); i++) {
+				values[i] = cursor.getDouble(0);
+			}
+			return values;
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Values of {@code column} in the rows of the query, null for NULL values.
+	 */
+	public String[] executeStrings(String column) {
+		final Cursor cursor = queryColumn(column);
+		try {
+			final String[] values = new String[cursor.getCount()];
+			for (int i = 0; cursor.moveToNext(); i++) {
+				values[i] = cursor.getString(0);
+			}
+			return values;
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Read the rows of the query into one array per selected column, without creating models.
+	 */
+	public ColumnarResult executeColumnar() {
+		if (mQueryBase instanceof Select) {
+			return readColumnar(toSql());
+
+		} else {
+			throw new IllegalArgumentException("Query must be instance of Select");
+
+		}
+	}
+
+	/**
+	 * @see #executeColumnar()
+	 */
+	public ColumnarResult executeColumnar(String... columns) {
+		return readColumnar(toColumnsSql(TextUtils.join(", ", columns)));
+	}
+
 	/**
 	 * Gets a value indicating whether the query returns any rows.
 	 * @return <code>true</code> if the query returns at least one row; otherwise, <code>false</code>.
 	 */
 	public boolean exists() {
-		return SQLiteUtils.intQuery(toExistsSql(), getArguments()) != 0;
+		return SQLiteUtils.longQuery(toExistsSql(), getBindArgs()) != 0;
 	}
 
 	/**
 	 * Gets the number of rows returned by the query.
 	 */
 	public int count() {
-		return SQLiteUtils.intQuery(toCountSql(), getArguments());
+		return (int) countLong();
+	}
+
+	public long countLong() {
+		return SQLiteUtils.longQuery(toCountSql(), getBindArgs());
+	}
+
+	/**
+	 * Sum of the values of {@code column} in the rows of the query, 0 if there's no row.
+	 */
+	public double sum(String column) {
+		return Double.parseDouble(SQLiteUtils.stringQuery(toAggregateSql("TOTAL", column), getBindArgs()));
+	}
+
+	/**
+	 * Sum of the integer values of {@code column} in the rows of the query, 0 if there's no row.
+	 */
+	public long sumLong(String column) {
+		return SQLiteUtils.longQuery(toAggregateSql("SUM", column), getBindArgs());
+	}
+
+	/**
+	 * Average of the values of {@code column} in the rows of the query, null if they're all NULL
+	 * or there's no row.
+	 */
+	public Double avg(String column) {
+		final String value = SQLiteUtils.stringQuery(toAggregateSql("AVG", column), getBindArgs());
+		return value != null ? Double.valueOf(value) : null;
+	}
+
+	/**
+	 * Smallest value of {@code column} in the rows of the query, as text. Null if they're all
+	 * NULL or there's no row.
+	 */
+	public String min(String column) {
+		return SQLiteUtils.stringQuery(toAggregateSql("MIN", column), getBindArgs());
+	}
+
+	/**
+	 * @see #min(String)
+	 */
+	public String max(String column) {
+		return SQLiteUtils.stringQuery(toAggregateSql("MAX", column), getBindArgs());
+	}
+
+	/**
+	 * Smallest value of {@code column} in the rows of the query, converted to an integer as by
+	 * {@code CAST(column AS INTEGER)}. Null if they're all NULL or there's no row.
+	 */
+	public Long minLong(String column) {
+		return toLong(SQLiteUtils.stringQuery(toAggregateSql("MIN", toIntegerSql(column)), getBindArgs()));
+	}
+
+	/**
+	 * @see #minLong(String)
+	 */
+	public Long maxLong(String column) {
+		return toLong(SQLiteUtils.stringQuery(toAggregateSql("MAX", toIntegerSql(column)), getBindArgs()));
+	}
+
+	/**
+	 * Smallest value of {@code column} in the rows of the query, converted to a real as by
+	 * {@code CAST(column AS REAL)}. Null if they're all NULL or there's no row.
+	 */
+	public Double minDouble(String column) {
+		return toDouble(SQLiteUtils.stringQuery(toAggregateSql("MIN", toRealSql(column)), getBindArgs()));
+	}
+
+	/**
+	 * @see #minDouble(String)
+	 */
+	public Double maxDouble(String column) {
+		return toDouble(SQLiteUtils.stringQuery(toAggregateSql("MAX", toRealSql(column)), getBindArgs()));
+	}
+
+	/**
+	 * The arguments of the query as they are bound, with their type: numbers and {@code byte[]}
+	 * aren't converted to strings.
+	 */
+	public Object[] getBindArgs() {
+		return mArguments.toArray();
 	}
 
 	public String[] getArguments() {
@@ -502,4 +838,63 @@ public final class From implements Sqlable {
 
 		return args;
 	}
+
+	private ColumnarResult readColumnar(String sql) {
+		final Cursor cursor = Cache.openDatabase().query(sql, getBindArgs());
+		try {
+			return new ColumnarResult(cursor);
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+	private Cursor queryColumn(String column) {
+		return Cache.openDatabase().query(toColumnsSql(column), getBindArgs());
+	}
+
+	private static String toIntegerSql(String column) {
+		return "CAST(" + column + " AS INTEGER)";
+	}
+
+	private static String toRealSql(String column) {
+		return "CAST(" + column + " AS REAL)";
+	}
+
+	private static Long toLong(String value) {
+		return value != null ? Long.valueOf(value) : null;
+	}
+
+	private static Double toDouble(String value) {
+		return value != null ? Double.valueOf(value) : null;
+	}
+
+	private static final class Include {
+		private final Class<? extends Model> mType;
+		private final String mForeignKey;
+		private final Class<? extends Model> mLink;
+		private final String mLink2Local;
+		private final String mLink2Target;
+
+		Include(Class<? extends Model> type, String foreignKey, Class<? extends Model> link,
+				String link2local, String link2target) {
+			mType = type;
+			mForeignKey = foreignKey;
+			mLink = link;
+			mLink2Local = link2local;
+			mLink2Target = link2target;
+		}
+
+		void load(List<? extends Model> entities) {
+			if (mLink == null) {
+				Model.includeMany(entities, mType, mForeignKey);
+			}
+			else if (mLink2Local == null) {
+				Model.includeMany2Many(entities, mType, mLink);
+			}
+			else {
+				Model.includeMany2Many(entities, mType, mLink, mLink2Local, mLink2Target);
+			}
+		}
+	}
 }
@@ -70,6 +70,18 @@ public final class Select implements Sqlable {
 
 	@Override
 	public String toSql() {
+		if (mColumns != null && mColumns.length > 0) {
+			return toSql(TextUtils.join(", ", mColumns));
+		}
+		else {
+			return toSql("*");
+		}
+	}
+
+	/**
+	 * The select clause with {@code columns} instead of the columns of this select.
+	 */
+	String toSql(String columns) {
 		StringBuilder sql = new StringBuilder();
 
 		sql.append("SELECT ");
@@ -81,12 +93,8 @@ public final class Select implements Sqlable {
 			sql.append("ALL ");
 		}
 
-		if (mColumns != null && mColumns.length > 0) {
-			sql.append(TextUtils.join(", ", mColumns) + " ");
-		}
-		else {
-			sql.append("* ");
-		}
+		sql.append(columns);
+		sql.append(" ");
 
 		return sql.toString();
 	}
@@ -16,7 +16,7 @@ package com.activeandroid.query;
  * limitations under the License.
  */
 
-import com.activeandroid.util.SQLiteUtils;
+import com.activeandroid.Cache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -82,7 +82,24 @@ public final class Set implements Sqlable {
 	}
 
 	public void execute() {
-		SQLiteUtils.execSql(toSql(), getArguments());
+		// Triggered so that queries of the table, and their cached results, see the update
+		Cache.openDatabase().executeAndTrigger(Cache.getTableName(mUpdate.getType()), toSql(), getBindArgs());
+	}
+
+	/**
+	 * The arguments of the query as they are bound, with their type.
+	 */
+	public Object[] getBindArgs() {
+		final Object[] args = new Object[mSetArguments.size() + mWhereArguments.size()];
+		int i = 0;
+		for (Object arg : mSetArguments) {
+			args[i++] = arg;
+		}
+		for (Object arg : mWhereArguments) {
+			args[i++] = arg;
+		}
+
+		return args;
 	}
 
 	public String[] getArguments() {
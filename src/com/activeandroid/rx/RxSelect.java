@@ -23,6 +23,18 @@ import rx.schedulers.Schedulers;
  */
 public class RxSelect<T extends Model> {
 
+    private static final Func1<String, Long> TO_LONG = new Func1<String, Long>() {
+        @Override public Long call(String value) {
+            return value != null ? Long.valueOf(value) : null;
+        }
+    };
+
+    private static final Func1<String, Double> TO_DOUBLE = new Func1<String, Double>() {
+        @Override public Double call(String value) {
+            return value != null ? Double.valueOf(value) : null;
+        }
+    };
+
     private Class<T> mType;
     private String mAlias;
     private StringBuilder mWhere = new StringBuilder();
@@ -71,6 +83,19 @@ public class RxSelect<T extends Model> {
         return this;
     }
 
+    /**
+     * @see com.activeandroid.query.From#seekAfter(Object...)
+     */
+    public RxSelect<T> seekAfter(Object... lastRowValues) {
+        if (mOrderBy == null) {
+            throw new IllegalStateException("seekAfter() needs orderBy() first");
+        }
+
+        final List<Object> arguments = new ArrayList<>(lastRowValues.length * 3);
+        final String clause = SQLiteUtils.createSeekClause(mOrderBy, lastRowValues, arguments);
+        return where("(" + clause + ")", arguments.toArray());
+    }
+
     public RxSelect<T> limit(int limit) {
         return limit(String.valueOf(limit));
     }
@@ -94,18 +119,22 @@ public class RxSelect<T extends Model> {
         return this;
     }
 
+    /**
+     * The models are read through {@link SQLiteUtils#rawQuery}, so from the query cache when it
+     * is enabled, the cursor of the query isn't used.
+     */
     public <T extends Model> rx.Observable<List<T>> execute() {
 
-        String sql = buildSql();
+        final String sql = buildSql();
+        final Object[] args = getBindArgs();
 
-        return Cache.openDatabase().createQuery(Cache.getTableName(mType), sql, getArguments())
+        return Cache.openDatabase().createQuery(Cache.getTableName(mType), sql, args)
                 .subscribeOn(Schedulers.io())
                 .map(new Func1<SqlBrite.Query, List<T>>() {
                     @Override
                     public List<T> call(SqlBrite.Query query) {
                         try {
-                            Cursor cursor = query.run();
-                            return SQLiteUtils.processCursor(mType, cursor);
+                            return SQLiteUtils.rawQuery(mType, sql, args);
 
                         } catch (Exception ex) {
                             ex.printStackTrace();
@@ -122,7 +151,7 @@ public class RxSelect<T extends Model> {
 
         String sql = buildSql();
 
-        return Cache.openDatabase().createQuery(Cache.getTableName(mType), sql, getArguments())
+        return Cache.openDatabase().createQuery(Cache.getTableName(mType), sql, getBindArgs())
                 .subscribeOn(Schedulers.io())
                 .map(new Func1<SqlBrite.Query, T>() {
                     @Override
@@ -147,9 +176,13 @@ public class RxSelect<T extends Model> {
     }
 
     private String buildSql() {
+        return buildSql("*");
+    }
+
+    private String buildSql(String columns) {
         StringBuilder sql = new StringBuilder();
 
-        buildSelect(sql);
+        buildSelect(sql, columns);
         addFrom(sql);
         addWhere(sql);
         addGroupBy(sql);
@@ -176,8 +209,15 @@ public class RxSelect<T extends Model> {
         return sqlString(sql);
     }
 
-    private void buildSelect(final StringBuilder sql) {
-        sql.append("SELECT * ");
+    /**
+     * @see com.activeandroid.query.From#toAggregateSql(String, String)
+     */
+    public String toAggregateSql(String function, String column) {
+        return "SELECT " + function + "(value) FROM (" + buildSql(column + " AS value") + ")";
+    }
+
+    private void buildSelect(final StringBuilder sql, String columns) {
+        sql.append("SELECT ").append(columns).append(" ");
     }
 
     private void addFrom(final StringBuilder sql) {
@@ -243,15 +283,119 @@ public class RxSelect<T extends Model> {
      * Gets the number of rows returned by the query.
      */
     public Observable<Integer> count() {
-        return Cache.openDatabase().createQuery(Cache.getTableName(mType), toCountSql(), getArguments())
+        final String sql = toCountSql();
+        final Object[] args = getBindArgs();
+        return Cache.openDatabase().createQuery(Cache.getTableName(mType), sql, args)
                 .subscribeOn(Schedulers.io())
                 .map(new Func1<SqlBrite.Query, Integer>() {
                     @Override public Integer call(SqlBrite.Query query) {
-                        Cursor cursor = query.run();
-                        if (cursor.moveToFirst()) {
-                            return cursor.getInt(cursor.getColumnIndex(cursor.getColumnName(0)));
-                        }
-                        return 0;
+                        return SQLiteUtils.intQuery(sql, args);
+                    }
+                })
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * @see com.activeandroid.query.From#countLong()
+     */
+    public Observable<Long> countLong() {
+        return longQuery(toCountSql());
+    }
+
+    /**
+     * @see com.activeandroid.query.From#sum(String)
+     */
+    public Observable<Double> sum(String column) {
+        return stringQuery(toAggregateSql("TOTAL", column)).map(new Func1<String, Double>() {
+            @Override public Double call(String value) {
+                return Double.valueOf(value);
+            }
+        });
+    }
+
+    /**
+     * @see com.activeandroid.query.From#sumLong(String)
+     */
+    public Observable<Long> sumLong(String column) {
+        return longQuery(toAggregateSql("SUM", column));
+    }
+
+    /**
+     * @see com.activeandroid.query.From#avg(String)
+     */
+    public Observable<Double> avg(String column) {
+        return stringQuery(toAggregateSql("AVG", column)).map(new Func1<String, Double>() {
+            @Override public Double call(String value) {
+                return value != null ? Double.valueOf(value) : null;
+            }
+        });
+    }
+
+    /**
+     * @see com.activeandroid.query.From#min(String)
+     */
+    public Observable<String> min(String column) {
+        return stringQuery(toAggregateSql("MIN", column));
+    }
+
+    /**
+     * @see com.activeandroid.query.From#max(String)
+     */
+    public Observable<String> max(String column) {
+        return stringQuery(toAggregateSql("MAX", column));
+    }
+
+    /**
+     * @see com.activeandroid.query.From#minLong(String)
+     */
+    public Observable<Long> minLong(String column) {
+        return stringQuery(toAggregateSql("MIN", "CAST(" + column + " AS INTEGER)")).map(TO_LONG);
+    }
+
+    /**
+     * @see com.activeandroid.query.From#maxLong(String)
+     */
+    public Observable<Long> maxLong(String column) {
+        return stringQuery(toAggregateSql("MAX", "CAST(" + column + " AS INTEGER)")).map(TO_LONG);
+    }
+
+    /**
+     * @see com.activeandroid.query.From#minDouble(String)
+     */
+    public Observable<Double> minDouble(String column) {
+        return stringQuery(toAggregateSql("MIN", "CAST(" + column + " AS REAL)")).map(TO_DOUBLE);
+    }
+
+    /**
+     * @see com.activeandroid.query.From#maxDouble(String)
+     */
+    public Observable<Double> maxDouble(String column) {
+        return stringQuery(toAggregateSql("MAX", "CAST(" + column + " AS REAL)")).map(TO_DOUBLE);
+    }
+
+    /**
+     * The value is read with a statement each time the table changes, the cursor of the query
+     * isn't used.
+     */
+    private Observable<Long> longQuery(final String sql) {
+        final Object[] args = getBindArgs();
+        return Cache.openDatabase().createQuery(Cache.getTableName(mType), sql, args)
+                .subscribeOn(Schedulers.io())
+                .map(new Func1<SqlBrite.Query, Long>() {
+                    @Override public Long call(SqlBrite.Query query) {
+                        return SQLiteUtils.longQuery(sql, args);
+                    }
+                })
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    private Observable<String> stringQuery(final String sql) {
+        final Object[] args = getBindArgs();
+        return Cache.openDatabase().createQuery(Cache.getTableName(mType), sql, args)
+                .subscribeOn(Schedulers.io())
+                .map(new Func1<SqlBrite.Query, String>() {
+                    @Override public String call(SqlBrite.Query query) {
+                        return SQLiteUtils.stringQuery(sql, args);
                     }
                 })
                 .observeOn(AndroidSchedulers.mainThread());
@@ -270,6 +414,13 @@ public class RxSelect<T extends Model> {
         }
     }
 
+    /**
+     * The arguments of the query as they are bound, with their type.
+     */
+    public Object[] getBindArgs() {
+        return mArguments.toArray();
+    }
+
     public String[] getArguments() {
         final int size = mArguments.size();
         final String[] args = new String[size];
@@ -17,8 +17,14 @@ package com.activeandroid.sqlbrite;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
 import android.database.sqlite.SQLiteTransactionListener;
 import android.support.annotation.CheckResult;
 import android.support.annotation.IntDef;
@@ -32,7 +38,9 @@ import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -101,10 +109,14 @@ public final class BriteDatabase implements Closeable {
   private volatile SQLiteDatabase readableDatabase;
   private volatile SQLiteDatabase writeableDatabase;
   private final Object databaseLock = new Object();
+  // Guarded by 'databaseLock'. Closed with the database.
+  private final Map<String, SQLiteStatement> statements = new HashMap<>();
 
   // Package-private to avoid synthetic accessor method for 'transaction' instance.
   volatile boolean logging;
 
+  private volatile WriteListener writeListener;
+
   BriteDatabase(@NonNull SQLiteOpenHelper helper, @NonNull SqlBrite.Logger logger) {
     this.helper = helper;
     this.logger = logger;
@@ -117,6 +129,20 @@ public final class BriteDatabase implements Closeable {
     logging = enabled;
   }
 
+  /**
+   * Set the listener told about the tables written through this database, or null.
+   */
+  public void setWriteListener(@Nullable WriteListener listener) {
+    writeListener = listener;
+  }
+
+  /**
+   * Whether the current thread is in a transaction begun with {@link #newTransaction()}.
+   */
+  public boolean isInTransaction() {
+    return transactions.get() != null;
+  }
+
   private SQLiteDatabase getReadableDatabase() {
     SQLiteDatabase db = readableDatabase;
     if (db == null) {
@@ -147,6 +173,12 @@ public final class BriteDatabase implements Closeable {
   }
 
   private void sendTableTrigger(Set<String> tables) {
+    // Told right away, and again with all written tables when the transaction commits
+    WriteListener listener = writeListener;
+    if (listener != null) {
+      listener.onTablesWritten(tables);
+    }
+
     SqliteTransaction transaction = transactions.get();
     if (transaction != null) {
       transaction.addAll(tables);
@@ -195,7 +227,18 @@ public final class BriteDatabase implements Closeable {
    */
   @CheckResult @NonNull
   public Transaction newTransaction() {
-    SqliteTransaction transaction = new SqliteTransaction(transactions.get());
+    return newTransaction(null);
+  }
+
+  /**
+   * Begin a transaction for this thread, as {@link #newTransaction()}, with a {@code listener}
+   * told when it begins, commits or rolls back.
+   *
+   * @see SQLiteDatabase#beginTransactionWithListener(SQLiteTransactionListener)
+   */
+  @CheckResult @NonNull
+  public Transaction newTransaction(@Nullable SQLiteTransactionListener listener) {
+    SqliteTransaction transaction = new SqliteTransaction(transactions.get(), listener);
     transactions.set(transaction);
     if (logging) log("TXN BEGIN %s", transaction);
     getWriteableDatabase().beginTransactionWithListener(transaction);
@@ -210,6 +253,12 @@ public final class BriteDatabase implements Closeable {
    */
   @Override public void close() throws IOException {
     synchronized (databaseLock) {
+      for (SQLiteStatement statement : statements.values()) {
+        synchronized (statement) {
+          statement.close();
+        }
+      }
+      statements.clear();
       readableDatabase = null;
       writeableDatabase = null;
       helper.close();
@@ -236,7 +285,7 @@ public final class BriteDatabase implements Closeable {
    */
   @CheckResult @NonNull
   public QueryObservable createQuery(@NonNull final String table, @NonNull String sql,
-      @NonNull String... args) {
+      @NonNull Object... args) {
     Func1<Set<String>, Boolean> tableFilter = new Func1<Set<String>, Boolean>() {
       @Override public Boolean call(Set<String> triggers) {
         return triggers.contains(table);
@@ -250,14 +299,14 @@ public final class BriteDatabase implements Closeable {
   }
 
   /**
-   * See {@link #createQuery(String, String, String...)} for usage. This overload allows for
+   * See {@link #createQuery(String, String, Object...)} for usage. This overload allows for
    * monitoring multiple tables for changes.
    *
    * @see SQLiteDatabase#rawQuery(String, String[])
    */
   @CheckResult @NonNull
   public QueryObservable createQuery(@NonNull final Iterable<String> tables, @NonNull String sql,
-      @NonNull String... args) {
+      @NonNull Object... args) {
     Func1<Set<String>, Boolean> tableFilter = new Func1<Set<String>, Boolean>() {
       @Override public Boolean call(Set<String> triggers) {
         for (String table : tables) {
@@ -277,7 +326,7 @@ public final class BriteDatabase implements Closeable {
 
   @CheckResult @NonNull
   private QueryObservable createQuery(final Func1<Set<String>, Boolean> tableFilter,
-      final String sql, final String... args) {
+      final String sql, final Object... args) {
     if (transactions.get() != null) {
       throw new IllegalStateException("Cannot create observable query in transaction. "
           + "Use query() for a query inside a transaction.");
@@ -288,7 +337,7 @@ public final class BriteDatabase implements Closeable {
         if (transactions.get() != null) {
           throw new IllegalStateException("Cannot execute observable query in a transaction.");
         }
-        return getReadableDatabase().rawQuery(sql, args);
+        return rawQuery(getReadableDatabase(), sql, args);
       }
 
       @Override public String toString() {
@@ -317,14 +366,16 @@ public final class BriteDatabase implements Closeable {
   }
 
   /**
-   * Runs the provided SQL and returns a {@link Cursor} over the result set.
+   * Runs the provided SQL and returns a {@link Cursor} over the result set. Arguments are bound
+   * with the binder matching their type: numbers as INTEGER or REAL, {@code byte[]} as BLOB and
+   * other objects as TEXT.
    *
    * @see SQLiteDatabase#rawQuery(String, String[])
    */
   @CheckResult // TODO @WorkerThread
-  public Cursor query(@NonNull String sql, @NonNull String... args) {
+  public Cursor query(@NonNull String sql, @NonNull Object... args) {
     if (logging) log("QUERY\n  sql: %s\n  args: %s", sql, Arrays.toString(args));
-    return getReadableDatabase().rawQuery(sql, args);
+    return rawQuery(getReadableDatabase(), sql, args);
   }
 
   public Cursor query(String table, String[] proyection, String selection, String[] selectionArgs, String groupBy, String having, String orderBy){
@@ -433,6 +484,100 @@ public final class BriteDatabase implements Closeable {
     return rows;
   }
 
+  /**
+   * Compile {@code sql} against the writeable database. The statement can be executed many times
+   * with different bindings through {@link #executeInsert} and {@link #executeUpdateDelete}. The
+   * caller is responsible for closing it.
+   *
+   * @see SQLiteDatabase#compileStatement(String)
+   */
+  @CheckResult @NonNull
+  public SQLiteStatement compileStatement(@NonNull String sql) {
+    if (logging) log("COMPILE\n  sql: %s", sql);
+    return getWriteableDatabase().compileStatement(sql);
+  }
+
+  /**
+   * Return the statement compiled for {@code sql}, compiling it on first use. The statement is
+   * shared: callers must hold its monitor while binding and executing it, and must not close it.
+   * Cached statements are closed with the database.
+   */
+  @CheckResult @NonNull
+  public SQLiteStatement getCachedStatement(@NonNull String sql) {
+    synchronized (databaseLock) {
+      SQLiteStatement statement = statements.get(sql);
+      if (statement == null) {
+        statement = compileStatement(sql);
+        statements.put(sql, statement);
+      }
+      return statement;
+    }
+  }
+
+  /**
+   * Execute a compiled {@code INSERT ... RETURNING} statement on {@code table} and notify any
+   * subscribed queries. The statement must return a single integer, usually the row id.
+   *
+   * @return the first returned value, or -1 if the insert was ignored.
+   * @see SQLiteStatement#simpleQueryForLong()
+   */
+  // TODO @WorkerThread
+  public long executeUpsert(@NonNull String table, @NonNull SQLiteStatement statement) {
+    if (logging) log("EXECUTE\n  table: %s\n  sql: %s", table, statement);
+    long rowId;
+    try {
+      rowId = statement.simpleQueryForLong();
+    } catch (SQLiteDoneException e) {
+      rowId = -1;
+    }
+
+    if (logging) log("UPSERT id: %s", rowId);
+
+    if (rowId != -1) {
+      sendTableTrigger(Collections.singleton(table));
+    }
+    return rowId;
+  }
+
+  /**
+   * Execute a compiled {@code INSERT} statement on {@code table} and notify any subscribed queries.
+   *
+   * @see SQLiteStatement#executeInsert()
+   */
+  // TODO @WorkerThread
+  public long executeInsert(@NonNull String table, @NonNull SQLiteStatement statement) {
+    if (logging) log("EXECUTE\n  table: %s\n  sql: %s", table, statement);
+    long rowId = statement.executeInsert();
+
+    if (logging) log("INSERT id: %s", rowId);
+
+    if (rowId != -1) {
+      // Only send a table trigger if the insert was successful.
+      sendTableTrigger(Collections.singleton(table));
+    }
+    return rowId;
+  }
+
+  /**
+   * Execute a compiled {@code UPDATE} or {@code DELETE} statement on {@code table} and notify any
+   * subscribed queries. This method will not trigger a notification if no rows were affected.
+   *
+   * @see SQLiteStatement#executeUpdateDelete()
+   */
+  // TODO @WorkerThread
+  public int executeUpdateDelete(@NonNull String table, @NonNull SQLiteStatement statement) {
+    if (logging) log("EXECUTE\n  table: %s\n  sql: %s", table, statement);
+    int rows = statement.executeUpdateDelete();
+
+    if (logging) log("EXECUTE affected %s %s", rows, rows != 1 ? "rows" : "row");
+
+    if (rows > 0) {
+      // Only send a table trigger if rows were affected.
+      sendTableTrigger(Collections.singleton(table));
+    }
+    return rows;
+  }
+
   /**
    * Execute {@code sql} provided it is NOT a {@code SELECT} or any other SQL statement that
    * returns data. No data can be returned (such as the number of affected rows). Instead, use
@@ -493,6 +638,15 @@ public final class BriteDatabase implements Closeable {
     sendTableTrigger(Collections.singleton(table));
   }
 
+  /**
+   * Listener of the writes made through a {@link BriteDatabase}. Unlike queries, which are
+   * notified once a transaction commits, it is called as soon as a table is written, even in a
+   * transaction which may still roll back, and called again when the transaction commits.
+   */
+  public interface WriteListener {
+    void onTablesWritten(Set<String> tables);
+  }
+
   /** An in-progress database transaction. */
   public interface Transaction extends Closeable {
     /**
@@ -565,6 +719,25 @@ public final class BriteDatabase implements Closeable {
   public @interface ConflictAlgorithm {
   }
 
+  /**
+   * {@link SQLiteDatabase#rawQuery(String, String[])} binds every argument as a string, so the
+   * arguments are bound by the cursor factory instead, before the query first runs.
+   */
+  private static Cursor rawQuery(SQLiteDatabase db, String sql, final Object[] args) {
+    if (args.length == 0) {
+      return db.rawQuery(sql, null);
+    }
+    return db.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+      @Override public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver,
+          String editTable, SQLiteQuery query) {
+        for (int i = 0; i < args.length; i++) {
+          DatabaseUtils.bindObjectToProgram(query, i + 1, args[i]);
+        }
+        return new SQLiteCursor(driver, editTable, query);
+      }
+    }, sql, null, null);
+  }
+
   private void log(String message, Object... args) {
     if (args.length > 0) message = String.format(message, args);
     logger.log(message);
@@ -592,20 +765,25 @@ public final class BriteDatabase implements Closeable {
   static final class SqliteTransaction extends LinkedHashSet<String>
       implements SQLiteTransactionListener {
     final SqliteTransaction parent;
+    final SQLiteTransactionListener listener;
     boolean commit;
 
-    SqliteTransaction(SqliteTransaction parent) {
+    SqliteTransaction(SqliteTransaction parent, SQLiteTransactionListener listener) {
       this.parent = parent;
+      this.listener = listener;
     }
 
     @Override public void onBegin() {
+      if (listener != null) listener.onBegin();
     }
 
     @Override public void onCommit() {
       commit = true;
+      if (listener != null) listener.onCommit();
     }
 
     @Override public void onRollback() {
+      if (listener != null) listener.onRollback();
     }
 
     @Override public String toString() {
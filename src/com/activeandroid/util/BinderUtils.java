@@ -0,0 +1,192 @@
+package com.activeandroid.util;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteStatement;
+
+import com.activeandroid.Cache;
+import com.activeandroid.Model;
+import com.activeandroid.serializer.TypeSerializer;
+
+/**
+ * Runtime support for generated {@link com.activeandroid.ModelBinder} classes. Only columns
+ * whose type needs a {@link TypeSerializer} go through here, everything else is bound directly.
+ */
+public final class BinderUtils {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private BinderUtils() {
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	public static void serialize(ContentValues values, String column, Class<?> type, Object value) {
+		if (value == null) {
+			values.putNull(column);
+			return;
+		}
+
+		final TypeSerializer typeSerializer = Cache.getParserForType(type);
+		if (typeSerializer == null) {
+			Log.e("No type serializer for: " + type);
+			return;
+		}
+
+		putValue(values, column, typeSerializer.serialize(value));
+	}
+
+	/**
+	 * Put a value of any of the types {@link ContentValues} can hold, other types as a string.
+	 */
+	public static void putValue(ContentValues values, String column, Object value) {
+		if (value == null) {
+			values.putNull(column);
+		}
+		else if (value instanceof Byte) {
+			values.put(column, (Byte) value);
+		}
+		else if (value instanceof Short) {
+			values.put(column, (Short) value);
+		}
+		else if (value instanceof Integer) {
+			values.put(column, (Integer) value);
+		}
+		else if (value instanceof Long) {
+			values.put(column, (Long) value);
+		}
+		else if (value instanceof Float) {
+			values.put(column, (Float) value);
+		}
+		else if (value instanceof Double) {
+			values.put(column, (Double) value);
+		}
+		else if (value instanceof Boolean) {
+			values.put(column, (Boolean) value);
+		}
+		else if (value instanceof byte[]) {
+			values.put(column, (byte[]) value);
+		}
+		else {
+			values.put(column, value.toString());
+		}
+	}
+
+	public static void bindSerialized(SQLiteStatement statement, int index, Class<?> type, Object value) {
+		if (value != null) {
+			final TypeSerializer typeSerializer = Cache.getParserForType(type);
+			if (typeSerializer == null) {
+				Log.e("No type serializer for: " + type);
+				value = null;
+			}
+			else {
+				value = typeSerializer.serialize(value);
+			}
+		}
+
+		bindValue(statement, index, value);
+	}
+
+	/**
+	 * Bind a value with the binder matching its type, other types as a string.
+	 */
+	public static void bindValue(SQLiteProgram program, int index, Object value) {
+		if (value == null) {
+			program.bindNull(index);
+		}
+		else if (value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte) {
+			program.bindLong(index, ((Number) value).longValue());
+		}
+		else if (value instanceof Double || value instanceof Float) {
+			program.bindDouble(index, ((Number) value).doubleValue());
+		}
+		else if (value instanceof Boolean) {
+			program.bindLong(index, (Boolean) value ? 1 : 0);
+		}
+		else if (value instanceof byte[]) {
+			program.bindBlob(index, (byte[]) value);
+		}
+		else {
+			program.bindString(index, value.toString());
+		}
+	}
+
+	public static Object deserialize(Class<?> type, Cursor cursor, int columnIndex) {
+		final TypeSerializer typeSerializer = Cache.getParserForType(type);
+		if (typeSerializer == null) {
+			Log.e("No type serializer for: " + type);
+			return null;
+		}
+
+		final Class<?> serializedType = typeSerializer.getSerializedType();
+		Object value;
+
+		if (serializedType.equals(Byte.class) || serializedType.equals(byte.class)) {
+			value = (byte) cursor.getInt(columnIndex);
+		}
+		else if (serializedType.equals(Short.class) || serializedType.equals(short.class)) {
+			value = cursor.getShort(columnIndex);
+		}
+		else if (serializedType.equals(Integer.class) || serializedType.equals(int.class)) {
+			value = cursor.getInt(columnIndex);
+		}
+		else if (serializedType.equals(Long.class) || serializedType.equals(long.class)) {
+			value = cursor.getLong(columnIndex);
+		}
+		else if (serializedType.equals(Float.class) || serializedType.equals(float.class)) {
+			value = cursor.getFloat(columnIndex);
+		}
+		else if (serializedType.equals(Double.class) || serializedType.equals(double.class)) {
+			value = cursor.getDouble(columnIndex);
+		}
+		else if (serializedType.equals(Boolean.class) || serializedType.equals(boolean.class)) {
+			value = cursor.getInt(columnIndex) != 0;
+		}
+		else if (serializedType.equals(byte[].class)) {
+			value = cursor.getBlob(columnIndex);
+		}
+		else {
+			value = cursor.getString(columnIndex);
+		}
+
+		return typeSerializer.deserialize(value);
+	}
+
+	/**
+	 * Referenced model from the batch loaded for the current cursor, the cache, or the database.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Model> T loadReference(Class<T> type, long id) {
+		final ForeignKeyBatch batch = ForeignKeyBatch.current();
+		if (batch != null && batch.contains(type, id)) {
+			return (T) batch.get(type, id);
+		}
+
+		T entity = (T) Cache.getEntity(type, id);
+		if (entity == null) {
+			entity = Model.load(type, id);
+		}
+		return entity;
+	}
+}
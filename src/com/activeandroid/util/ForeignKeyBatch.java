@@ -0,0 +1,184 @@
+package com.activeandroid.util;
+
+/*
+ * Copyright (C) 2010 Michael Pardo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.Cursor;
+
+import com.activeandroid.Cache;
+import com.activeandroid.ColumnCodec;
+import com.activeandroid.CursorProjection;
+import com.activeandroid.Model;
+import com.activeandroid.TableInfo;
+import com.activeandroid.query.Select;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Models referenced by the rows of a cursor, loaded before the rows with one IN query per
+ * referenced table, so that {@link BinderUtils#loadReference} doesn't query once per row.
+ * <p>
+ * The batch being loaded is attached to the current thread between {@link #begin} and
+ * {@link #end()}. Loading the referenced models can start a nested batch.
+ */
+final class ForeignKeyBatch {
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE CONSTANTS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private static final ThreadLocal<ForeignKeyBatch> sCurrent = new ThreadLocal<ForeignKeyBatch>();
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE MEMBERS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/** Loaded models by type and id, null for ids without row. */
+	private final Map<Class<? extends Model>, Map<Long, Model>> mEntities =
+			new HashMap<Class<? extends Model>, Map<Long, Model>>();
+	private final ForeignKeyBatch mPrevious;
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// CONSTRUCTORS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private ForeignKeyBatch(ForeignKeyBatch previous) {
+		mPrevious = previous;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PUBLIC METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Load the models referenced by all rows of {@code cursor} which aren't in {@link Cache},
+	 * and attach them to the current thread. The cursor is moved back to its first row.
+	 *
+	 * @return null if the cursor has no foreign key column
+	 */
+	static ForeignKeyBatch begin(TableInfo tableInfo, Cursor cursor, CursorProjection projection) {
+		final ColumnCodec[] codecs = tableInfo.getCodecs();
+		final int[] columnIndexes = projection.getCodecIndexes();
+
+		final Map<Class<? extends Model>, Set<Long>> missingIds = new LinkedHashMap<Class<? extends Model>, Set<Long>>();
+		final List<Integer> referenceColumns = new ArrayList<Integer>();
+		for (int i = 0; i < codecs.length; i++) {
+			if (codecs[i].getReferencedType() != null && columnIndexes[i] >= 0) {
+				referenceColumns.add(i);
+				if (!missingIds.containsKey(codecs[i].getReferencedType())) {
+					missingIds.put(codecs[i].getReferencedType(), new LinkedHashSet<Long>());
+				}
+			}
+		}
+
+		if (referenceColumns.isEmpty()) {
+			return null;
+		}
+
+		do {
+			for (int i : referenceColumns) {
+				final int columnIndex = columnIndexes[i];
+				if (cursor.isNull(columnIndex)) {
+					continue;
+				}
+
+				final Class<? extends Model> type = codecs[i].getReferencedType();
+				final long id = cursor.getLong(columnIndex);
+				if (Cache.getEntity(type, id) == null) {
+					missingIds.get(type).add(id);
+				}
+			}
+		}
+		while (cursor.moveToNext());
+		cursor.moveToFirst();
+
+		final ForeignKeyBatch batch = new ForeignKeyBatch(sCurrent.get());
+		for (Map.Entry<Class<? extends Model>, Set<Long>> entry : missingIds.entrySet()) {
+			batch.load(entry.getKey(), entry.getValue());
+		}
+
+		sCurrent.set(batch);
+		return batch;
+	}
+
+	static ForeignKeyBatch current() {
+		return sCurrent.get();
+	}
+
+	/**
+	 * Whether the batch loaded {@code type} {@code id}, even if it has no row.
+	 */
+	boolean contains(Class<? extends Model> type, long id) {
+		final Map<Long, Model> entities = mEntities.get(type);
+		return entities != null && entities.containsKey(id);
+	}
+
+	Model get(Class<? extends Model> type, long id) {
+		final Map<Long, Model> entities = mEntities.get(type);
+		return entities != null ? entities.get(id) : null;
+	}
+
+	/**
+	 * Detach the batch from the current thread.
+	 */
+	void end() {
+		sCurrent.set(mPrevious);
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	// PRIVATE METHODS
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	private void load(Class<? extends Model> type, Set<Long> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+
+		final Map<Long, Model> entities = new HashMap<Long, Model>(ids.size() * 2);
+		for (Long id : ids) {
+			entities.put(id, null);
+		}
+
+		// The id column of the referenced table, not of the table being loaded
+		final String idName = Cache.getTableInfo(type).getIdName();
+		final List<Long> chunk = new ArrayList<Long>(Math.min(ids.size(), SQLiteUtils.MAX_IN_ARGUMENTS));
+		for (Long id : ids) {
+			chunk.add(id);
+			if (chunk.size() == SQLiteUtils.MAX_IN_ARGUMENTS) {
+				loadChunk(type, idName, chunk, entities);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			loadChunk(type, idName, chunk, entities);
+		}
+
+		mEntities.put(type, entities);
+	}
+
+	private static void loadChunk(Class<? extends Model> type, String idName, List<Long> ids,
+			Map<Long, Model> entities) {
+		final List<Model> models = new Select().from(type).in(idName, ids).execute();
+		for (Model model : models) {
+			entities.put(model.getId(), model);
+		}
+	}
+}
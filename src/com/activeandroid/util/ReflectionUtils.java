@@ -18,6 +18,8 @@ package com.activeandroid.util;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -28,6 +30,7 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 
+import com.activeandroid.Lazy;
 import com.activeandroid.Model;
 import com.activeandroid.annotation.Column;
 import com.activeandroid.serializer.TypeSerializer;
@@ -41,6 +44,24 @@ public final class ReflectionUtils {
 		return isSubclassOf(type, Model.class) && (!Modifier.isAbstract(type.getModifiers()));
 	}
 
+	/**
+	 * Model referenced by a {@link Lazy} column, or null if the field isn't one or doesn't declare
+	 * a model type.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Class<? extends Model> getLazyType(Field field) {
+		if (field == null || !field.getType().equals(Lazy.class)
+				|| !(field.getGenericType() instanceof ParameterizedType)) {
+			return null;
+		}
+
+		final Type argument = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+		if (argument instanceof Class && isModel((Class<?>) argument)) {
+			return (Class<? extends Model>) argument;
+		}
+		return null;
+	}
+
 	public static boolean isTypeSerializer(Class<?> type) {
 		return isSubclassOf(type, TypeSerializer.class);
 	}
@@ -17,12 +17,18 @@ package com.activeandroid.util;
  */
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 import android.text.TextUtils;
 
 import com.activeandroid.Cache;
+import com.activeandroid.CursorProjection;
 import com.activeandroid.Model;
+import com.activeandroid.ModelBinder;
+import com.activeandroid.QueryCache;
 import com.activeandroid.TableInfo;
+import com.activeandroid.annotation.Cacheable;
 import com.activeandroid.annotation.Column;
 import com.activeandroid.annotation.Column.ConflictAction;
 import com.activeandroid.rxschedulers.AndroidSchedulers;
@@ -33,9 +39,9 @@ import com.activeandroid.sqlbrite.SqlBrite;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -58,6 +64,9 @@ public final class SQLiteUtils {
 
     public static final boolean FOREIGN_KEYS_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO;
 
+    /** Ids per IN (...) clause, well below SQLITE_MAX_VARIABLE_NUMBER (999 before SQLite 3.32). */
+    public static final int MAX_IN_ARGUMENTS = 500;
+
     //////////////////////////////////////////////////////////////////////////////////////
     // PRIVATE CONTSANTS
     //////////////////////////////////////////////////////////////////////////////////////
@@ -94,28 +103,55 @@ public final class SQLiteUtils {
     private static HashMap<String, List<String>> sIndexGroupMap;
     private static HashMap<String, List<String>> sUniqueGroupMap;
     private static HashMap<String, ConflictAction> sOnUniqueConflictsMap;
+    private static volatile String sSQLiteVersion;
 
     //////////////////////////////////////////////////////////////////////////////////////
     // PUBLIC METHODS
     //////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Cached query results which read a table named in {@code sql} are evicted. In a
+     * transaction, prefer {@code BriteDatabase.executeAndTrigger}, which evicts them again when
+     * the transaction commits.
+     */
     public static void execSql(String sql) {
         Cache.openDatabase().execute(sql);
+        invalidateQueryCache(sql);
     }
 
     public static void execSql(String sql, Object[] bindArgs) {
         Cache.openDatabase().execute(sql, bindArgs);
+        invalidateQueryCache(sql);
     }
 
-    public static <T extends Model> List<T> rawQuery(Class<? extends Model> type, String sql, String[] selectionArgs) {
+    /**
+     * Models returned by {@code sql}. The result is kept in the {@link QueryCache} when it is
+     * enabled and the models are cached, and a new list is returned on each call.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Model> List<T> rawQuery(Class<? extends Model> type, String sql, Object[] selectionArgs) {
+        final QueryCache queryCache = getQueryCache(type);
+        long generation = 0;
+        if (queryCache != null) {
+            final Object cached = queryCache.get(type, sql, selectionArgs);
+            if (cached != QueryCache.MISS) {
+                return new ArrayList<T>((List<T>) cached);
+            }
+            generation = queryCache.getGeneration();
+        }
+
         Cursor cursor = Cache.openDatabase().query(sql, selectionArgs);
         List<T> entities = processCursor(type, cursor);
         cursor.close();
 
+        if (queryCache != null) {
+            queryCache.put(type, sql, selectionArgs, new ArrayList<T>(entities), generation);
+        }
+
         return entities;
     }
 
-    public static <T extends Model> Observable<T> rawRxQuery(final Class<? extends Model> type, String sql, String[] selectionArgs) {
+    public static <T extends Model> Observable<T> rawRxQuery(final Class<? extends Model> type, String sql, Object[] selectionArgs) {
 
         TableInfo tableInfo = new TableInfo(type);
         QueryObservable query = Cache.openDatabase().createQuery(tableInfo.getTableName(), sql, selectionArgs);
@@ -141,15 +177,29 @@ public final class SQLiteUtils {
 
     }
 
-    public static int intQuery(final String sql, final String[] selectionArgs) {
+    public static int intQuery(final String sql, final Object[] selectionArgs) {
+        final QueryCache queryCache = getQueryCache(null);
+        long generation = 0;
+        if (queryCache != null) {
+            final Object cached = queryCache.get(Integer.class, sql, selectionArgs);
+            if (cached != QueryCache.MISS) {
+                return (Integer) cached;
+            }
+            generation = queryCache.getGeneration();
+        }
+
         final Cursor cursor = Cache.openDatabase().query(sql, selectionArgs);
         final int number = processIntCursor(cursor);
         cursor.close();
 
+        if (queryCache != null) {
+            queryCache.put(Integer.class, sql, selectionArgs, number, generation);
+        }
+
         return number;
     }
 
-    public static <T extends Model> T rawQuerySingle(Class<? extends Model> type, String sql, String[] selectionArgs) {
+    public static <T extends Model> T rawQuerySingle(Class<? extends Model> type, String sql, Object[] selectionArgs) {
         List<T> entities = rawQuery(type, sql, selectionArgs);
 
         if (entities.size() > 0) {
@@ -159,6 +209,182 @@ public final class SQLiteUtils {
         return null;
     }
 
+    /**
+     * First column of the first row returned by {@code sql}, read with a statement instead of a
+     * cursor and its window. 0 if there's no row or the value is NULL.
+     */
+    public static long longQuery(String sql, Object[] bindArgs) {
+        final QueryCache queryCache = getQueryCache(null);
+        long generation = 0;
+        if (queryCache != null) {
+            final Object cached = queryCache.get(Long.class, sql, bindArgs);
+            if (cached != QueryCache.MISS) {
+                return (Long) cached;
+            }
+            generation = queryCache.getGeneration();
+        }
+
+        long value;
+        final SQLiteStatement statement = compileStatement(sql, bindArgs);
+        try {
+            value = statement.simpleQueryForLong();
+        }
+        catch (SQLiteDoneException e) {
+            value = 0;
+        }
+        finally {
+            statement.close();
+        }
+
+        if (queryCache != null) {
+            queryCache.put(Long.class, sql, bindArgs, value, generation);
+        }
+
+        return value;
+    }
+
+    /**
+     * @see #longQuery(String, Object[])
+     * @return null if there's no row or the value is NULL
+     */
+    public static String stringQuery(String sql, Object[] bindArgs) {
+        final QueryCache queryCache = getQueryCache(null);
+        long generation = 0;
+        if (queryCache != null) {
+            final Object cached = queryCache.get(String.class, sql, bindArgs);
+            if (cached != QueryCache.MISS) {
+                return (String) cached;
+            }
+            generation = queryCache.getGeneration();
+        }
+
+        String value;
+        final SQLiteStatement statement = compileStatement(sql, bindArgs);
+        try {
+            value = statement.simpleQueryForString();
+        }
+        catch (SQLiteDoneException e) {
+            value = null;
+        }
+        finally {
+            statement.close();
+        }
+
+        if (queryCache != null) {
+            queryCache.put(String.class, sql, bindArgs, value, generation);
+        }
+
+        return value;
+    }
+
+    /**
+     * Version of the SQLite library, as returned by {@code sqlite_version()}. Queried once.
+     */
+    public static String getSQLiteVersion() {
+        String version = sSQLiteVersion;
+        if (version == null) {
+            final Cursor cursor = Cache.openDatabase().query("SELECT sqlite_version()");
+            try {
+                version = cursor.moveToFirst() ? cursor.getString(0) : "";
+            }
+            finally {
+                cursor.close();
+            }
+
+            sSQLiteVersion = version;
+            Log.v("SQLite version " + version);
+        }
+        return version;
+    }
+
+    /**
+     * Whether the SQLite library supports {@code INSERT ... ON CONFLICT DO UPDATE} with several
+     * conflict targets and {@code RETURNING}, added in 3.35.0.
+     */
+    public static boolean isUpsertSupported() {
+        return isVersionAtLeast(getSQLiteVersion(), 3, 35);
+    }
+
+    /**
+     * Whether the SQLite library supports row value comparisons like {@code (a, b) > (?, ?)},
+     * added in 3.15.0.
+     */
+    public static boolean isRowValueSupported() {
+        return isVersionAtLeast(getSQLiteVersion(), 3, 15);
+    }
+
+    /**
+     * Condition selecting the rows which come after the row with the values {@code values} for
+     * the terms of {@code orderBy}, its parameters are added to {@code arguments}. Ordering terms
+     * can't be null, nor use NULLS FIRST or NULLS LAST.
+     * <p>
+     * Terms with the same direction are compared as one row value when SQLite supports it, other
+     * orderings get a condition on the first term first, so that an index on it is searched.
+     */
+    public static String createSeekClause(String orderBy, Object[] values, List<Object> arguments) {
+        final List<String> terms = splitOrderBy(orderBy);
+        if (terms.size() != values.length) {
+            throw new IllegalArgumentException("Expected " + terms.size() + " values for ORDER BY "
+                    + orderBy + ", got " + values.length);
+        }
+
+        final String[] expressions = new String[terms.size()];
+        final boolean[] descending = new boolean[terms.size()];
+        boolean sameDirection = true;
+        for (int i = 0; i < expressions.length; i++) {
+            if (values[i] == null) {
+                throw new IllegalArgumentException("Can't seek after a NULL value of " + terms.get(i));
+            }
+
+            String term = terms.get(i);
+            final String upperTerm = term.toUpperCase(Locale.US);
+            if (upperTerm.matches(".*\\sNULLS\\s+(FIRST|LAST)")) {
+                throw new IllegalArgumentException("Can't seek after " + term + ", NULLS FIRST and NULLS LAST aren't supported");
+            }
+            if (upperTerm.endsWith(" DESC")) {
+                descending[i] = true;
+                term = term.substring(0, term.length() - 5).trim();
+            }
+            else if (upperTerm.endsWith(" ASC")) {
+                term = term.substring(0, term.length() - 4).trim();
+            }
+            expressions[i] = term;
+            sameDirection &= descending[i] == descending[0];
+        }
+
+        final StringBuilder clause = new StringBuilder();
+        if (expressions.length == 1) {
+            clause.append(expressions[0]).append(descending[0] ? " < ?" : " > ?");
+            arguments.add(values[0]);
+        }
+        else if (sameDirection && isRowValueSupported()) {
+            clause.append("(").append(TextUtils.join(", ", expressions)).append(descending[0] ? ") < (" : ") > (");
+            for (int i = 0; i < values.length; i++) {
+                clause.append(i > 0 ? ", ?" : "?");
+                arguments.add(values[i]);
+            }
+            clause.append(")");
+        }
+        else {
+            // a >= ? AND (a > ? OR (a = ? AND (b > ? OR (b = ? AND c > ?))))
+            clause.append(expressions[0]).append(descending[0] ? " <= ?" : " >= ?");
+            arguments.add(values[0]);
+            for (int i = 0; i < expressions.length; i++) {
+                clause.append(" AND (").append(expressions[i]).append(descending[i] ? " < ?" : " > ?");
+                arguments.add(values[i]);
+                if (i < expressions.length - 1) {
+                    clause.append(" OR (").append(expressions[i]).append(" = ?");
+                    arguments.add(values[i]);
+                }
+            }
+            for (int i = 0; i < expressions.length * 2 - 1; i++) {
+                clause.append(")");
+            }
+        }
+
+        return clause.toString();
+    }
+
     // Database creation
 
     public static ArrayList<String> createUniqueDefinition(TableInfo tableInfo) {
@@ -297,6 +523,10 @@ public final class SQLiteUtils {
         if (typeSerializer != null) {
             type = typeSerializer.getSerializedType();
         }
+        else if (ReflectionUtils.getLazyType(field) != null) {
+            // Stored as the referenced model
+            type = ReflectionUtils.getLazyType(field);
+        }
 
         if (TYPE_MAP.containsKey(type)) {
             definition.append(name);
@@ -354,31 +584,124 @@ public final class SQLiteUtils {
         return definition.toString();
     }
 
+    // Statements
+
+    public static String createInsertSql(TableInfo tableInfo) {
+        final String[] columns = tableInfo.getBoundColumnNames();
+        final StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(tableInfo.getTableName()).append(" (");
+        sql.append(TextUtils.join(", ", columns));
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        sql.append(")");
+
+        return sql.toString();
+    }
+
+    /**
+     * UPDATE of all columns of {@link TableInfo#getBoundColumnNames()}, with the id as last
+     * parameter.
+     */
+    public static String createUpdateSql(TableInfo tableInfo) {
+        final String[] columns = tableInfo.getBoundColumnNames();
+        final StringBuilder sql = new StringBuilder();
+        sql.append("UPDATE ").append(tableInfo.getTableName()).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns[i]).append("=?");
+        }
+        sql.append(" WHERE ").append(tableInfo.getIdName()).append("=?");
+
+        return sql.toString();
+    }
+
+    /**
+     * INSERT of all columns of {@link TableInfo#getBoundColumnNames()} which updates the row
+     * conflicting on a "unique on update" column or group instead, and returns the id of the row.
+     */
+    public static String createUpsertSql(TableInfo tableInfo) {
+        final StringBuilder sql = new StringBuilder(createInsertSql(tableInfo));
+
+        final StringBuilder set = new StringBuilder();
+        for (String column : tableInfo.getBoundColumnNames()) {
+            if (column.equals(tableInfo.getIdName())) {
+                continue;
+            }
+            set.append(set.length() > 0 ? ", " : "").append(column).append("=excluded.").append(column);
+        }
+
+        for (Field field : tableInfo.getUniqueFields()) {
+            sql.append(" ON CONFLICT(").append(tableInfo.getColumnName(field)).append(")");
+            sql.append(" DO UPDATE SET ").append(set);
+        }
+        for (List<Field> group : tableInfo.getUniqueGroups()) {
+            sql.append(" ON CONFLICT(");
+            for (int i = 0; i < group.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(tableInfo.getColumnName(group.get(i)));
+            }
+            sql.append(") DO UPDATE SET ").append(set);
+        }
+        sql.append(" RETURNING ").append(tableInfo.getIdName());
+
+        return sql.toString();
+    }
+
+    /**
+     * SELECT of the id of the row matching any "unique on update" column or group, with the
+     * values of {@link TableInfo#getUniqueLookupColumns()} as parameters.
+     */
+    public static String createUniqueLookupSql(TableInfo tableInfo) {
+        final StringBuilder where = new StringBuilder();
+        for (Field field : tableInfo.getUniqueFields()) {
+            where.append(where.length() > 0 ? " OR " : "");
+            where.append(tableInfo.getColumnName(field)).append("=?");
+        }
+        for (List<Field> group : tableInfo.getUniqueGroups()) {
+            where.append(where.length() > 0 ? " OR (" : "(");
+            for (int i = 0; i < group.size(); i++) {
+                where.append(i > 0 ? " AND " : "").append(tableInfo.getColumnName(group.get(i))).append("=?");
+            }
+            where.append(")");
+        }
+
+        return "SELECT " + tableInfo.getIdName() + " FROM " + tableInfo.getTableName()
+                + " WHERE " + where + " LIMIT 1";
+    }
+
     @SuppressWarnings("unchecked")
     public static <T extends Model> List<T> processCursor(Class<? extends Model> type, Cursor cursor) {
         TableInfo tableInfo = Cache.getTableInfo(type);
-        String idName = tableInfo.getIdName();
+        final ModelBinder<Model> binder = tableInfo.getBinder();
         final List<T> entities = new ArrayList<T>();
 
         try {
-            Constructor<?> entityConstructor = type.getConstructor();
+            Constructor<?> entityConstructor = binder == null ? type.getConstructor() : null;
 
             if (cursor.moveToFirst()) {
-                /**
-                 * Obtain the columns ordered to fix issue #106 (https://github.com/pardom/ActiveAndroid/issues/106)
-                 * when the cursor have multiple columns with same name obtained from join tables.
-                 */
-                List<String> columnsOrdered = new ArrayList<String>(Arrays.asList(cursor.getColumnNames()));
-                do {
-                    Model entity = Cache.getEntity(type, cursor.getLong(columnsOrdered.indexOf(idName)));
-                    if (entity == null) {
-                        entity = (T) entityConstructor.newInstance();
-                    }
+                final CursorProjection projection = new CursorProjection(tableInfo, cursor);
+                final int idIndex = projection.getIdIndex();
+                final ForeignKeyBatch references = ForeignKeyBatch.begin(tableInfo, cursor, projection);
+                try {
+                    do {
+                        Model entity = idIndex >= 0 ? Cache.getEntity(type, cursor.getLong(idIndex)) : null;
+                        if (entity == null) {
+                            entity = binder != null ? binder.newInstance() : (Model) entityConstructor.newInstance();
+                        }
 
-                    entity.loadFromCursor(cursor);
-                    entities.add((T) entity);
+                        entity.loadFromCursor(cursor, projection);
+                        entities.add((T) entity);
+                    }
+                    while (cursor.moveToNext());
+                }
+                finally {
+                    if (references != null) {
+                        references.end();
+                    }
                 }
-                while (cursor.moveToNext());
             }
 
         } catch (NoSuchMethodException e) {
@@ -435,4 +758,86 @@ public final class SQLiteUtils {
 
         return sl;
     }
+
+    //////////////////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The query cache, or null if it's disabled, if models of {@code type} aren't cached, or in a
+     * transaction, whose writes other threads don't see yet.
+     */
+    private static QueryCache getQueryCache(Class<? extends Model> type) {
+        final QueryCache queryCache = Cache.getQueryCache();
+        if (queryCache == null || Cache.openDatabase().isInTransaction()) {
+            return null;
+        }
+        if (type != null) {
+            final Cacheable cacheable = Cache.getTableInfo(type).getCacheable();
+            if (cacheable != null && !cacheable.value()) {
+                return null;
+            }
+        }
+        return queryCache;
+    }
+
+    private static void invalidateQueryCache(String sql) {
+        final QueryCache queryCache = Cache.getQueryCache();
+        if (queryCache != null) {
+            queryCache.invalidate(sql);
+        }
+    }
+
+    /**
+     * The statement is closed by the caller. SQLite keeps the native statement in the statement
+     * cache of the connection, so compiling the same SQL again is cheap.
+     */
+    private static SQLiteStatement compileStatement(String sql, Object[] bindArgs) {
+        final SQLiteStatement statement = Cache.openDatabase().compileStatement(sql);
+        for (int i = 0; i < bindArgs.length; i++) {
+            BinderUtils.bindValue(statement, i + 1, bindArgs[i]);
+        }
+        return statement;
+    }
+
+    /**
+     * Terms of an ORDER BY clause, split on the commas which aren't within parentheses.
+     */
+    private static List<String> splitOrderBy(String orderBy) {
+        final List<String> terms = new ArrayList<String>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < orderBy.length(); i++) {
+            final char c = orderBy.charAt(i);
+            if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                depth--;
+            }
+            else if (c == ',' && depth == 0) {
+                terms.add(orderBy.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        terms.add(orderBy.substring(start).trim());
+
+        return terms;
+    }
+
+    private static boolean isVersionAtLeast(String version, int major, int minor) {
+        if (version == null) {
+            return false;
+        }
+
+        final String[] parts = version.split("\\.");
+        try {
+            final int versionMajor = Integer.parseInt(parts[0]);
+            final int versionMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return versionMajor > major || (versionMajor == major && versionMinor >= minor);
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+    }
 }
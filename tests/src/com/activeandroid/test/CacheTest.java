@@ -4,12 +4,21 @@ import android.test.AndroidTestCase;
 
 import com.activeandroid.ActiveAndroid;
 import com.activeandroid.Cache;
+import com.activeandroid.CacheMetrics;
 import com.activeandroid.Configuration;
 import com.activeandroid.Model;
+import com.activeandroid.QueryCache;
 import com.activeandroid.TableInfo;
+import com.activeandroid.annotation.Cacheable;
+import com.activeandroid.annotation.Column;
 import com.activeandroid.annotation.Table;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.From;
+import com.activeandroid.query.Select;
+import com.activeandroid.util.SQLiteUtils;
 
 import java.util.Collection;
+import java.util.List;
 
 public class CacheTest extends AndroidTestCase {
 
@@ -17,7 +26,7 @@ public class CacheTest extends AndroidTestCase {
     protected void setUp() {
         Configuration conf = new Configuration.Builder(getContext())
                 .setDatabaseName("CacheTest")
-                .addModelClasses(CacheTestModel.class, CacheTestModel2.class)
+                .addModelClasses(CacheTestModel.class, CacheTestModel2.class, UncachedTestModel.class)
                 .create();
         ActiveAndroid.initialize(conf, true);
     }
@@ -25,7 +34,7 @@ public class CacheTest extends AndroidTestCase {
     public void testGetTableInfos() {
         assertNotNull(Cache.getContext());
         Collection<TableInfo> tableInfos = Cache.getTableInfos();
-        assertEquals(2, tableInfos.size());
+        assertEquals(3, tableInfos.size());
 
         {
             TableInfo tableInfo = Cache.getTableInfo(CacheTestModel.class);
@@ -40,11 +49,155 @@ public class CacheTest extends AndroidTestCase {
         }
     }
 
+    public void testEntityCache() {
+        Cache.clear();
+        CacheTestModel model = newModel(new CacheTestModel(), 1);
+        CacheTestModel2 model2 = newModel(new CacheTestModel2(), 1);
+        Cache.addEntity(model);
+        Cache.addEntity(model2);
+        assertSame(model, Cache.getEntity(CacheTestModel.class, 1));
+        assertSame(model2, Cache.getEntity(CacheTestModel2.class, 1));
+        assertNull(Cache.getEntity(CacheTestModel.class, 2));
+
+        Cache.removeEntity(model);
+        assertNull(Cache.getEntity(CacheTestModel.class, 1));
+        assertSame(model2, Cache.getEntity(CacheTestModel2.class, 1));
+    }
+
+    public void testEntityCacheEvictsLeastRecentlyUsed() {
+        Cache.clear();
+        for (long id = 1; id <= Cache.DEFAULT_CACHE_SIZE; id++) {
+            Cache.addEntity(newModel(new CacheTestModel(), id));
+        }
+        assertNotNull(Cache.getEntity(CacheTestModel.class, 1));
+
+        Cache.addEntity(newModel(new CacheTestModel(), Cache.DEFAULT_CACHE_SIZE + 1));
+        assertNotNull(Cache.getEntity(CacheTestModel.class, 1));
+        assertNull(Cache.getEntity(CacheTestModel.class, 2));
+        assertNotNull(Cache.getEntity(CacheTestModel.class, Cache.DEFAULT_CACHE_SIZE + 1));
+    }
+
+    public void testEstimateSize() {
+        TableInfo tableInfo = Cache.getTableInfo(CacheTestModel.class);
+        CacheTestModel model = new CacheTestModel();
+        int size = tableInfo.estimateSize(model);
+        assertTrue(size > 0);
+
+        model.name = "0123456789";
+        assertTrue(tableInfo.estimateSize(model) >= size + 2 * model.name.length());
+    }
+
+    public void testUncachedModel() {
+        UncachedTestModel model = newModel(new UncachedTestModel(), 1);
+        Cache.addEntity(model);
+        assertNull(Cache.getEntity(UncachedTestModel.class, 1));
+    }
+
+    public void testCacheMetrics() {
+        Cache.clear();
+        TableInfo tableInfo = Cache.getTableInfo(CacheTestModel2.class);
+        tableInfo.resetCacheMetrics();
+
+        Cache.addEntity(newModel(new CacheTestModel2(), 1));
+        Cache.getEntity(CacheTestModel2.class, 1);
+        Cache.getEntity(CacheTestModel2.class, 2);
+
+        CacheMetrics metrics = tableInfo.getCacheMetrics();
+        assertEquals("CacheTestModel2", metrics.getTableName());
+        assertEquals(1, metrics.getPutCount());
+        assertEquals(1, metrics.getHitCount());
+        assertEquals(1, metrics.getMissCount());
+        assertEquals(1, metrics.getSize());
+        assertEquals(0.5, metrics.getHitRate());
+
+        Cache.clear();
+        tableInfo.resetCacheMetrics();
+        metrics = tableInfo.getCacheMetrics();
+        assertEquals(0, metrics.getPutCount());
+        assertEquals(0, metrics.getSize());
+    }
+
+    public void testQueryCache() {
+        ActiveAndroid.dispose();
+        ActiveAndroid.initialize(new Configuration.Builder(getContext())
+                .setDatabaseName("CacheTest")
+                .addModelClasses(CacheTestModel.class, CacheTestModel2.class, UncachedTestModel.class)
+                .setQueryCacheSize(16)
+                .create(), true);
+        try {
+            QueryCache queryCache = Cache.getQueryCache();
+            new Delete().from(CacheTestModel.class).execute();
+            CacheTestModel model = new CacheTestModel();
+            model.name = "a";
+            model.save();
+
+            List<CacheTestModel> first = new Select().from(CacheTestModel.class).execute();
+            List<CacheTestModel> second = new Select().from(CacheTestModel.class).execute();
+            assertEquals(1, first.size());
+            assertNotSame(first, second);
+            assertSame(first.get(0), second.get(0));
+
+            new Select().from(CacheTestModel2.class).count();
+            new Select().from(UncachedTestModel.class).execute();
+            assertEquals(2, queryCache.size());
+
+            model.name = "b";
+            model.save();
+            assertEquals(1, queryCache.size());
+            assertEquals("b", new Select().from(CacheTestModel.class).<CacheTestModel>executeSingle().name);
+        }
+        finally {
+            ActiveAndroid.dispose();
+        }
+    }
+
+    /**
+     * The same query read as different types shouldn't get the cached result of another type.
+     */
+    public void testQueryCacheKeepsResultTypesApart() {
+        ActiveAndroid.dispose();
+        ActiveAndroid.initialize(new Configuration.Builder(getContext())
+                .setDatabaseName("CacheTest")
+                .addModelClasses(CacheTestModel.class, CacheTestModel2.class, UncachedTestModel.class)
+                .setQueryCacheSize(16)
+                .create(), true);
+        try {
+            new Delete().from(CacheTestModel.class).execute();
+            CacheTestModel model = new CacheTestModel();
+            model.name = "a";
+            model.save();
+
+            From query = new Select().from(CacheTestModel.class);
+            String sql = query.toCountSql();
+            assertEquals(1, SQLiteUtils.intQuery(sql, query.getBindArgs()));
+            assertEquals(1, SQLiteUtils.longQuery(sql, query.getBindArgs()));
+            assertEquals("1", SQLiteUtils.stringQuery(sql, query.getBindArgs()));
+            assertEquals(1, query.count());
+            assertEquals(1, query.countLong());
+            assertEquals(1, SQLiteUtils.intQuery(sql, query.getBindArgs()));
+        }
+        finally {
+            ActiveAndroid.dispose();
+        }
+    }
+
+    private static <T extends Model> T newModel(T model, long id) {
+        model.setId(id);
+        return model;
+    }
+
     @Table(name = "CacheTestModel")
     private static class CacheTestModel extends Model {
+        @Column
+        public String name;
     }
 
     @Table(name = "CacheTestModel2")
     private static class CacheTestModel2 extends Model {
     }
+
+    @Table(name = "UncachedTestModel")
+    @Cacheable(false)
+    private static class UncachedTestModel extends Model {
+    }
 }
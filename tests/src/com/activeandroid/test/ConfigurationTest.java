@@ -15,6 +15,8 @@ public class ConfigurationTest extends AndroidTestCase {
         Configuration conf = new Configuration.Builder(getContext()).create();
         assertNotNull(conf.getContext());
         assertEquals(1024, conf.getCacheSize());
+        assertEquals(0, conf.getCacheSizeBytes());
+        assertEquals(1, conf.getCacheConcurrencyLevel());
         assertEquals("Application.db", conf.getDatabaseName());
         assertEquals(1, conf.getDatabaseVersion());
         assertNull(conf.getModelClasses());
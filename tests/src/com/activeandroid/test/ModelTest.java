@@ -16,19 +16,33 @@
 
 package com.activeandroid.test;
 
+import android.database.Cursor;
+
+import com.activeandroid.ActiveAndroid;
 import com.activeandroid.Cache;
+import com.activeandroid.GroupCommitWriter;
+import com.activeandroid.Lazy;
 import com.activeandroid.Model;
+import com.activeandroid.ModelIterator;
 import com.activeandroid.TableInfo;
 import com.activeandroid.annotation.Column;
 import com.activeandroid.annotation.Table;
+import com.activeandroid.query.ColumnarResult;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.From;
 import com.activeandroid.query.Select;
+import com.activeandroid.query.Update;
+import com.activeandroid.sqlbrite.BriteDatabase;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Simple test now covering equals and hashcode methods.
@@ -229,6 +243,491 @@ public class ModelTest extends ActiveAndroidTestCase {
 
     }
 
+    /**
+     * Saving a new model with the value of a "unique on update" column of an existing row should
+     * update that row instead of inserting a new one.
+     */
+    public void testSaveUpdatesRowWithSameUniqueColumn() {
+        new Delete().from(UniqueMockModel.class).execute();
+
+        UniqueMockModel first = new UniqueMockModel();
+        first.code = "unique-code";
+        first.name = "first";
+        Long id = first.save();
+
+        UniqueMockModel second = new UniqueMockModel();
+        second.code = "unique-code";
+        second.name = "second";
+
+        assertEquals(id, second.save());
+        assertEquals(1, new Select().from(UniqueMockModel.class).count());
+        assertEquals("second", new Select().from(UniqueMockModel.class).where("Id = ?", id)
+                .<UniqueMockModel>executeSingle().name);
+    }
+
+    /**
+     * With trackChanges, save() should only write the columns changed since the model was loaded.
+     */
+    public void testSaveWritesOnlyChangedColumns() {
+        TrackedMockModel model = new TrackedMockModel();
+        model.name = "name";
+        model.description = "description";
+        Long id = model.save();
+
+        // Change both columns behind the model's back
+        new Update(TrackedMockModel.class).set("name = ?, description = ?", "other name", "other description")
+                .where("Id = ?", id).execute();
+
+        model.save(); // Nothing changed, nothing written
+        model.description = "new description";
+        model.save();
+
+        TrackedMockModel saved = new Select().from(TrackedMockModel.class).where("Id = ?", id).executeSingle();
+        assertEquals("other name", saved.name);
+        assertEquals("new description", saved.description);
+    }
+
+    /**
+     * Foreign keys of all rows of a query should resolve to the referenced models.
+     */
+    public void testForeignKeysOfAllRowsAreResolved() {
+        new Delete().from(ChildMockModel.class).execute();
+
+        List<ParentJoinMockModel> parents = new ArrayList<ParentJoinMockModel>();
+        for (int i = 0; i < 3; i++) {
+            ParentJoinMockModel parent = new ParentJoinMockModel();
+            parent.intField = i;
+            parent.save();
+            parents.add(parent);
+        }
+
+        for (int i = 0; i < 9; i++) {
+            ChildMockModel child = new ChildMockModel();
+            child.intField = i;
+            child.parent = parents.get(i % parents.size());
+            child.save();
+        }
+
+        List<ChildMockModel> children = new Select().from(ChildMockModel.class).orderBy("intField").execute();
+        assertEquals(9, children.size());
+        for (ChildMockModel child : children) {
+            assertNotNull(child.parent);
+            assertEquals(parents.get(child.intField % parents.size()).getId(), child.parent.getId());
+            assertEquals(child.intField % parents.size(), child.parent.intField);
+        }
+
+        new Delete().from(ChildMockModel.class).execute();
+    }
+
+    /**
+     * Lazy references should only hold the id until first get().
+     */
+    public void testLazyReference() {
+        ParentJoinMockModel parent = new ParentJoinMockModel();
+        parent.intField = 7;
+        parent.save();
+
+        LazyMockModel model = new LazyMockModel();
+        model.parent = Lazy.of(parent);
+        Long id = model.save();
+
+        Cache.clear();
+        LazyMockModel loaded = new Select().from(LazyMockModel.class).where("Id = ?", id).executeSingle();
+        assertFalse(loaded.parent.isLoaded());
+        assertEquals(parent.getId(), loaded.parent.getId());
+        assertEquals(7, loaded.parent.get().intField);
+        assertTrue(loaded.parent.isLoaded());
+    }
+
+    /**
+     * Children included by the query should be returned by getMany() without querying again.
+     */
+    public void testIncludeServesGetManyFromMemory() {
+        new Delete().from(ChildMockModel.class).execute();
+        new Delete().from(ParentJoinMockModel.class).execute();
+
+        for (int i = 0; i < 2; i++) {
+            ParentJoinMockModel parent = new ParentJoinMockModel();
+            parent.intField = i;
+            parent.save();
+
+            for (int j = 0; j < 2; j++) {
+                ChildMockModel child = new ChildMockModel();
+                child.parent = parent;
+                child.save();
+            }
+        }
+
+        List<ParentJoinMockModel> parents = new Select().from(ParentJoinMockModel.class)
+                .where("intField < 2").include(ChildMockModel.class, "parent").execute();
+
+        assertEquals(2, parents.size());
+        for (ParentJoinMockModel parent : parents) {
+            List<ChildMockModel> children = parent.getChildren();
+            assertEquals(2, children.size());
+            for (ChildMockModel child : children) {
+                assertEquals(parent.getId(), child.parent.getId());
+            }
+        }
+    }
+
+    public void testIncludeIsStaleAfterChildIsSaved() {
+        new Delete().from(ChildMockModel.class).execute();
+        new Delete().from(ParentJoinMockModel.class).execute();
+
+        ParentJoinMockModel parent = new ParentJoinMockModel();
+        parent.save();
+        ChildMockModel child = new ChildMockModel();
+        child.parent = parent;
+        child.save();
+
+        parent = new Select().from(ParentJoinMockModel.class)
+                .include(ChildMockModel.class, "parent").executeSingle();
+        assertEquals(1, parent.getChildren().size());
+
+        ChildMockModel other = new ChildMockModel();
+        other.parent = parent;
+        other.save();
+        assertEquals(2, parent.getChildren().size());
+
+        new Delete().from(ChildMockModel.class).execute();
+        assertEquals(0, parent.getChildren().size());
+    }
+
+    /**
+     * A flyweight iteration should visit every row with a single model instance.
+     */
+    public void testIterateFlyweight() {
+        new Delete().from(ChildMockModel.class).execute();
+        new Delete().from(ParentJoinMockModel.class).execute();
+        for (int i = 0; i < 5; i++) {
+            ParentJoinMockModel model = new ParentJoinMockModel();
+            model.intField = i;
+            model.save();
+        }
+        Cache.clear();
+
+        ModelIterator<ParentJoinMockModel> iterator = new Select().from(ParentJoinMockModel.class)
+                .orderBy("intField").iterate(ModelIterator.Mode.FLYWEIGHT);
+        ParentJoinMockModel first = null;
+        int count = 0;
+        while (iterator.hasNext()) {
+            ParentJoinMockModel model = iterator.next();
+            if (first == null) {
+                first = model;
+            }
+            assertSame(first, model);
+            assertEquals(count++, model.intField);
+            assertNull(Cache.getEntity(ParentJoinMockModel.class, model.getId()));
+        }
+        assertEquals(5, count);
+    }
+
+    /**
+     * A NULL column shouldn't keep the value of the previous row in the flyweight instance.
+     */
+    public void testIterateFlyweightResetsNullColumns() {
+        new Delete().from(ChildMockModel.class).execute();
+        new Delete().from(ParentJoinMockModel.class).execute();
+        ParentJoinMockModel withDate = new ParentJoinMockModel();
+        withDate.intField = 0;
+        withDate.dateField = new Date();
+        withDate.save();
+        ParentJoinMockModel withoutDate = new ParentJoinMockModel();
+        withoutDate.intField = 1;
+        withoutDate.save();
+        Cache.clear();
+
+        ModelIterator<ParentJoinMockModel> iterator = new Select().from(ParentJoinMockModel.class)
+                .orderBy("intField").iterate(ModelIterator.Mode.FLYWEIGHT);
+        assertTrue(iterator.hasNext());
+        assertNotNull(iterator.next().dateField);
+        assertTrue(iterator.hasNext());
+        ParentJoinMockModel model = iterator.next();
+        assertEquals(1, model.intField);
+        assertNull(model.dateField);
+        assertFalse(iterator.hasNext());
+    }
+
+    public void testAggregates() {
+        new Delete().from(MockModel.class).execute();
+        From query = new Select().from(MockModel.class);
+        assertEquals(0, query.countLong());
+        assertEquals(0.0, query.sum("doubleField"));
+        assertNull(query.avg("doubleField"));
+        assertNull(query.minLong("intField"));
+        assertNull(query.maxDouble("doubleField"));
+
+        for (int i = 1; i <= 4; i++) {
+            MockModel model = new MockModel();
+            model.intField = i;
+            model.doubleField = i / 2.0;
+            model.save();
+        }
+
+        assertEquals(4, query.countLong());
+        assertEquals(10, query.sumLong("intField"));
+        assertEquals(5.0, query.sum("doubleField"));
+        assertEquals(1.25, query.avg("doubleField"));
+        assertEquals("1", query.min("intField"));
+        assertEquals("4", query.max("intField"));
+        assertEquals(Long.valueOf(1), query.minLong("intField"));
+        assertEquals(Long.valueOf(4), query.maxLong("intField"));
+        assertEquals(0.5, query.minDouble("doubleField"));
+        assertEquals(2.0, query.maxDouble("doubleField"));
+        assertEquals(Double.valueOf(4), query.maxDouble("intField"));
+        assertEquals(3, new Select().from(MockModel.class).orderBy("intField").limit(2).sumLong("intField"));
+    }
+
+    /**
+     * saveAll() should insert new models and update saved ones of several tables, and skip the
+     * tracked models which didn't change.
+     */
+    public void testSaveAllMixedTables() {
+        new Delete().from(MockModel.class).execute();
+        new Delete().from(TrackedMockModel.class).execute();
+        MockModel saved = new MockModel();
+        saved.intField = 1;
+        saved.save();
+        TrackedMockModel unchanged = new TrackedMockModel();
+        unchanged.name = "unchanged";
+        unchanged.save();
+        // Not written again by saveAll() while the model doesn't change
+        new Delete().from(TrackedMockModel.class).where("Id = ?", unchanged.getId()).execute();
+
+        saved.intField = 2;
+        List<Model> models = new ArrayList<Model>();
+        models.add(saved);
+        for (int i = 0; i < 3; i++) {
+            MockModel model = new MockModel();
+            model.intField = 10;
+            models.add(model);
+            TrackedMockModel tracked = new TrackedMockModel();
+            tracked.name = "tracked" + i;
+            models.add(tracked);
+        }
+        models.add(unchanged);
+        Model.saveAll(models);
+
+        for (Model model : models) {
+            assertNotNull(model.getId());
+        }
+        assertEquals(4, new Select().from(MockModel.class).count());
+        assertEquals(32, new Select().from(MockModel.class).sumLong("intField"));
+        assertEquals(3, new Select().from(TrackedMockModel.class).count());
+        assertEquals(0, new Select().from(TrackedMockModel.class).where("Id = ?", unchanged.getId()).count());
+    }
+
+    /**
+     * A failing saveAll() should commit nothing and give the models back their ids and snapshots.
+     */
+    public void testSaveAllRollsBackFailedBatch() {
+        new Delete().from(MockModel.class).execute();
+        new Delete().from(TrackedMockModel.class).execute();
+        new Delete().from(RequiredMockModel.class).execute();
+        TrackedMockModel tracked = new TrackedMockModel();
+        tracked.name = "before";
+        tracked.save();
+        Long trackedId = tracked.getId();
+
+        tracked.name = "after";
+        MockModel inserted = new MockModel();
+        List<Model> models = new ArrayList<Model>();
+        models.add(tracked);
+        models.add(inserted);
+        models.add(new RequiredMockModel());
+        try {
+            Model.saveAll(models);
+            fail();
+        }
+        catch (RuntimeException e) {
+            // NOT NULL constraint
+        }
+
+        assertNull(inserted.getId());
+        assertEquals(trackedId, tracked.getId());
+        assertEquals(0, new Select().from(MockModel.class).count());
+        assertEquals(0, new Select().from(RequiredMockModel.class).count());
+        assertEquals("before", new Select().from(TrackedMockModel.class).<TrackedMockModel>executeSingle().name);
+
+        // The snapshot taken by the failed batch was dropped, so the change is still written
+        tracked.save();
+        Cache.clear();
+        assertEquals("after", new Select().from(TrackedMockModel.class).<TrackedMockModel>executeSingle().name);
+    }
+
+    public void testExecuteColumnar() {
+        new Delete().from(MockModel.class).execute();
+        for (int i = 0; i < 3; i++) {
+            MockModel model = new MockModel();
+            model.intField = i;
+            model.doubleField = i + 0.5;
+            model.save();
+        }
+        new Update(MockModel.class).set("doubleField = NULL").where("intField = ?", 1).execute();
+
+        ColumnarResult result = new Select("intField", "doubleField").from(MockModel.class)
+                .orderBy("intField").executeColumnar();
+        assertEquals(3, result.getRowCount());
+        assertEquals(1, result.getColumnIndex("doubleField"));
+        assertEquals(Cursor.FIELD_TYPE_INTEGER, result.getType(0));
+        assertEquals(Cursor.FIELD_TYPE_FLOAT, result.getType(1));
+        assertEquals(2, result.getLongs(0)[2]);
+        assertEquals(2.5, result.getDoubles(1)[2]);
+        assertTrue(result.isNull(1, 1));
+        assertFalse(result.isNull(1, 0));
+    }
+
+    /**
+     * The single column readers should return one value per row, 0 or null for NULL values.
+     */
+    public void testExecuteColumn() {
+        new Delete().from(MockModel.class).execute();
+        for (int i = 0; i < 3; i++) {
+            MockModel model = new MockModel();
+            model.intField = i;
+            model.doubleField = i + 0.5;
+            model.save();
+        }
+        new Update(MockModel.class).set("doubleField = NULL").where("intField = ?", 1).execute();
+
+        From query = new Select().from(MockModel.class).orderBy("intField");
+        long[] longs = query.executeLongs("intField");
+        assertEquals(3, longs.length);
+        assertEquals(2, longs[2]);
+        int[] ints = query.executeInts("intField");
+        assertEquals(3, ints.length);
+        assertEquals(1, ints[1]);
+        double[] doubles = query.executeDoubles("doubleField");
+        assertEquals(3, doubles.length);
+        assertEquals(0.5, doubles[0]);
+        assertEquals(0.0, doubles[1]);
+        assertEquals(2.5, doubles[2]);
+        assertEquals(0, new Select().from(MockModel.class).where("intField > 5").executeLongs("intField").length);
+
+        new Delete().from(TrackedMockModel.class).execute();
+        for (String name : new String[] { "a", null }) {
+            TrackedMockModel model = new TrackedMockModel();
+            model.name = name;
+            model.save();
+        }
+        String[] strings = new Select().from(TrackedMockModel.class).orderBy("Id").executeStrings("name");
+        assertEquals(2, strings.length);
+        assertEquals("a", strings[0]);
+        assertNull(strings[1]);
+    }
+
+    public void testSaveLater() throws Exception {
+        new Delete().from(MockModel.class).execute();
+        MockModel model = new MockModel();
+        model.intField = 1;
+        Future<Long> first = model.saveLater();
+        model.intField = 2;
+        Future<Long> second = model.saveLater();
+        assertSame(first, second);
+
+        ActiveAndroid.flush();
+        assertTrue(first.isDone());
+        assertEquals(model.getId(), first.get());
+        assertEquals(1, new Select().from(MockModel.class).count());
+        assertEquals(2, new Select().from(MockModel.class).sumLong("intField"));
+    }
+
+    /**
+     * A model which can't be saved should only fail its own save, not the others of its batch.
+     */
+    public void testSaveLaterIsolatesFailedModels() throws Exception {
+        new Delete().from(RequiredMockModel.class).execute();
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        for (String name : new String[] { "first", null, "third" }) {
+            RequiredMockModel model = new RequiredMockModel();
+            model.name = name;
+            futures.add(model.saveLater());
+        }
+
+        ActiveAndroid.flush();
+        assertNotNull(futures.get(0).get());
+        assertNotNull(futures.get(2).get());
+        try {
+            futures.get(1).get();
+            fail();
+        }
+        catch (ExecutionException e) {
+            // NOT NULL constraint
+        }
+        assertEquals(2, new Select().from(RequiredMockModel.class).count());
+    }
+
+    public void testGroupCommitIsolatesFailedUnits() throws Exception {
+        new Delete().from(MockModel.class).execute();
+        GroupCommitWriter writer = ActiveAndroid.getGroupCommitWriter();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < 3; i++) {
+            final int value = i;
+            futures.add(writer.submit(new GroupCommitWriter.Unit() {
+                @Override
+                public void write(BriteDatabase db) {
+                    MockModel model = new MockModel();
+                    model.intField = value;
+                    model.save();
+                    if (value == 1) {
+                        throw new IllegalStateException();
+                    }
+                }
+            }));
+        }
+
+        futures.get(0).get();
+        futures.get(2).get();
+        try {
+            futures.get(1).get();
+            fail();
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, new Select().from(MockModel.class).count());
+        assertEquals(0, new Select().from(MockModel.class).where("intField = ?", 1).count());
+    }
+
+    /**
+     * A unit failing in a nested transaction rolls back the whole transaction, the units which
+     * succeeded should still be written, models tracking changes included.
+     */
+    public void testGroupCommitWritesUnitsAfterFailedNestedTransaction() throws Exception {
+        new Delete().from(TrackedMockModel.class).execute();
+        new Delete().from(RequiredMockModel.class).execute();
+        final TrackedMockModel tracked = new TrackedMockModel();
+        tracked.name = "tracked";
+
+        GroupCommitWriter writer = ActiveAndroid.getGroupCommitWriter();
+        Future<Void> saved = writer.submit(new GroupCommitWriter.Unit() {
+            @Override
+            public void write(BriteDatabase db) {
+                tracked.save();
+            }
+        });
+        Future<Void> failed = writer.submit(new GroupCommitWriter.Unit() {
+            @Override
+            public void write(BriteDatabase db) {
+                Model.saveAll(Arrays.asList(new RequiredMockModel()));
+            }
+        });
+
+        saved.get();
+        try {
+            failed.get();
+            fail();
+        }
+        catch (ExecutionException e) {
+            // NOT NULL constraint
+        }
+        TrackedMockModel loaded = new Select().from(TrackedMockModel.class).executeSingle();
+        assertNotNull(loaded);
+        assertEquals(tracked.getId(), loaded.getId());
+        assertEquals(0, new Select().from(RequiredMockModel.class).count());
+    }
+
 	/**
 	 * Mock model as we need 2 different model classes.
 	 */
@@ -252,6 +751,52 @@ public class ModelTest extends ActiveAndroidTestCase {
 
         @Column
         public boolean booleanField;
+
+        public List<ChildMockModel> getChildren() {
+            return getMany(ChildMockModel.class, "parent");
+        }
+    }
+
+    /**
+     * Mock model with a "unique on update" column.
+     */
+    @Table(name = "UniqueMockModel")
+    public static class UniqueMockModel extends Model {
+        @Column(unique = true, onUniqueConflict = Column.ConflictAction.UPDATE)
+        public String code;
+
+        @Column
+        public String name;
+    }
+
+    /**
+     * Mock model saving only its changed columns.
+     */
+    @Table(name = "TrackedMockModel", trackChanges = true)
+    public static class TrackedMockModel extends Model {
+        @Column
+        public String name;
+
+        @Column
+        public String description;
+    }
+
+    /**
+     * Mock model with a NOT NULL column.
+     */
+    @Table(name = "RequiredMockModel")
+    public static class RequiredMockModel extends Model {
+        @Column(notNull = true)
+        public String name;
+    }
+
+    /**
+     * Mock model with a lazy reference.
+     */
+    @Table(name = "LazyMockModel")
+    public static class LazyMockModel extends Model {
+        @Column
+        public Lazy<ParentJoinMockModel> parent;
     }
 
     /**
@@ -18,6 +18,7 @@ package com.activeandroid.test.query;
 
 import com.activeandroid.Model;
 import com.activeandroid.annotation.Table;
+import com.activeandroid.query.CompiledQuery;
 import com.activeandroid.query.From;
 import com.activeandroid.query.Select;
 import com.activeandroid.test.MockModel;
@@ -56,6 +57,74 @@ public class FromTest extends SqlableTestCase {
 				from().orderBy("Id DESC"));
 	}
 	
+	public void testSeekAfter() {
+		From query = from().orderBy("Id DESC").seekAfter(5);
+		assertArrayEquals(query.getArguments(), "5");
+		assertSqlEquals(SELECT_PREFIX + "WHERE (Id < ?) ORDER BY Id DESC",
+				query);
+
+		// Mixed directions can't be compared as one row value
+		query = from().where("intField > ?", 1).orderBy("doubleField, Id DESC").seekAfter(2.5, 7);
+		assertArrayEquals(query.getArguments(), "1", "2.5", "2.5", "2.5", "7");
+		assertSqlEquals(SELECT_PREFIX + "WHERE (intField > ?) AND (doubleField >= ? AND (doubleField > ? "
+				+ "OR (doubleField = ? AND (Id < ?)))) ORDER BY doubleField, Id DESC",
+				query);
+
+		// The seek condition applies to both sides of an OR
+		query = from().where("intField = ?", 1).or("intField = ?", 2).orderBy("Id").seekAfter(3);
+		assertSqlEquals(SELECT_PREFIX + "WHERE (intField = ? OR intField = ?) AND (Id > ?) ORDER BY Id",
+				query);
+	}
+
+	public void testSeekAfterRejectsNullsOrdering() {
+		try {
+			from().orderBy("intField DESC NULLS LAST, Id").seekAfter(1, 2);
+			fail("seekAfter() with NULLS LAST should throw");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	public void testSeekAfterNeedsOrderBy() {
+		try {
+			from().seekAfter(5);
+			fail("seekAfter() without orderBy() should throw");
+		}
+		catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+	
+	public void testToColumnsSql() {
+		assertEquals("SELECT ALL Id FROM MockModel WHERE Id > ? ORDER BY Id LIMIT 10",
+				from().where("Id > ?", 5).orderBy("Id").limit(10).toColumnsSql("Id"));
+		assertEquals("SELECT DISTINCT Id FROM MockModel",
+				new Select("Name").distinct().from(MockModel.class).toColumnsSql("Id"));
+	}
+	
+	public void testCompile() {
+		CompiledQuery<MockModel> query = from().where("Id = ?", 5).compile();
+		assertEquals(SELECT_PREFIX + "WHERE Id = ?", query.getSql());
+		assertArrayEquals(query.getArguments(), "5");
+
+		CompiledQuery<MockModel> bound = query.bind(true);
+		assertEquals(SELECT_PREFIX + "WHERE Id = ?", bound.getSql());
+		assertArrayEquals(bound.getArguments(), "1");
+		assertArrayEquals(query.getArguments(), "5");
+
+		assertArrayEquals(query.bind((Object) null).getArguments(), (String) null);
+		try {
+			query.bind(1, 2);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			// One parameter
+		}
+		assertEquals(0, from().where("Name = '?' -- ?").compile().bind().getArguments().length);
+		from().where("Id = ?1 OR Id > ?1").compile().bind(5);
+	}
+
 	public void testWhereNoArguments() {
 		assertSqlEquals(SELECT_PREFIX + "WHERE Id = 5",
 				from().where("Id = 5"));
@@ -85,6 +154,13 @@ public class FromTest extends SqlableTestCase {
 				query);
 	}
 
+	public void testBindArgsKeepTheirType() {
+		final byte[] key = new byte[] { 1, 2 };
+		From query = from().where("Id = ? AND Key = ? AND Ratio > ? AND Enabled = ?", 5L, key, 2.5, true);
+		assertArrayEquals(query.getBindArgs(), 5L, key, 2.5, 1);
+		assertArrayEquals(query.getArguments(), "5", key.toString(), "2.5", "1");
+	}
+
 	public void testWhereChaining() {
 	    
 	    From expected = from()